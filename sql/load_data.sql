@@ -28,4 +28,7 @@ INSERT INTO transactions (sender_id, receiver_id, description, amount) VALUES
 (1, 2, 'Prêt', 100.78),
 (4, 3, 'Rembousement du sac de croquettes', 55.00);
 
-
+-- Les donnees de test utilisent l'auto-incrementation => resynchronisation des generateurs d'id de Hibernate (voir id_generators dans pay_my_buddy.sql).
+UPDATE id_generators SET next_val = (SELECT COALESCE(MAX(id), 0) + 50 FROM users) WHERE name = 'users';
+UPDATE id_generators SET next_val = (SELECT COALESCE(MAX(id), 0) + 50 FROM connections) WHERE name = 'connections';
+UPDATE id_generators SET next_val = (SELECT COALESCE(MAX(id), 0) + 50 FROM transactions) WHERE name = 'transactions';
@@ -36,6 +36,8 @@ ENGINE = InnoDB;
 
 -- -----------------------------------------------------
 -- Table `pay_my_buddy`.`connections`
+-- Une ligne par sens : user_id peut envoyer de l'argent a friend_id.
+-- Pas d'index sur user_id seul : user_friend_UNIQUE commence par user_id et sert aussi a la cle etrangere fk_connections_user1.
 -- -----------------------------------------------------
 CREATE TABLE IF NOT EXISTS `pay_my_buddy`.`connections` (
   `id` BIGINT NOT NULL AUTO_INCREMENT,
@@ -44,7 +46,6 @@ CREATE TABLE IF NOT EXISTS `pay_my_buddy`.`connections` (
   `created_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
   PRIMARY KEY (`id`),
   UNIQUE INDEX `user_friend_UNIQUE` (`user_id` ASC, `friend_id` ASC) VISIBLE,
-  INDEX `fk_connections_user1_idx` (`user_id` ASC) VISIBLE,
   INDEX `fk_connections_user2_idx` (`friend_id` ASC) VISIBLE,
   CONSTRAINT `fk_connections_user1`
     FOREIGN KEY (`user_id`)
@@ -69,10 +70,15 @@ CREATE TABLE IF NOT EXISTS `pay_my_buddy`.`transactions` (
   `receiver_id` BIGINT NOT NULL,
   `description` VARCHAR(255) NOT NULL,
   `amount` DECIMAL(8,2) NOT NULL,
+  `idempotency_key` VARCHAR(64) NULL,
   PRIMARY KEY (`id`),
   INDEX `fk_users_sender_idx` (`sender_id` ASC) VISIBLE,
   INDEX `fk_users_receiver_idx` (`receiver_id` ASC) VISIBLE,
   INDEX `sender_created` (`sender_id` ASC, `created_at` ASC) VISIBLE,
+  INDEX `receiver_created` (`receiver_id` ASC, `created_at` ASC) VISIBLE,
+  INDEX `created` (`created_at` ASC) VISIBLE,
+  INDEX `amount` (`amount` ASC) VISIBLE,
+  UNIQUE INDEX `sender_idempotency_key` (`sender_id` ASC, `idempotency_key` ASC) VISIBLE,
   CONSTRAINT `fk_users_sender`
     FOREIGN KEY (`sender_id`)
     REFERENCES `pay_my_buddy`.`users` (`id`)
@@ -86,6 +92,113 @@ CREATE TABLE IF NOT EXISTS `pay_my_buddy`.`transactions` (
 ENGINE = InnoDB;
 
 
+-- -----------------------------------------------------
+-- Table `pay_my_buddy`.`ledger_entries`
+-- Journal des mouvements (paymybuddy.balance.mode=ledger) : insertions uniquement, jamais de mise a jour.
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `pay_my_buddy`.`ledger_entries` (
+  `id` BIGINT NOT NULL,
+  `created_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `user_id` BIGINT NOT NULL,
+  `transaction_id` BIGINT NOT NULL,
+  `amount` DECIMAL(8,2) NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `user_created` (`user_id` ASC, `created_at` ASC) VISIBLE,
+  INDEX `fk_ledger_transaction_idx` (`transaction_id` ASC) VISIBLE,
+  INDEX `created` (`created_at` ASC) VISIBLE,
+  CONSTRAINT `fk_ledger_user`
+    FOREIGN KEY (`user_id`)
+    REFERENCES `pay_my_buddy`.`users` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION,
+  CONSTRAINT `fk_ledger_transaction`
+    FOREIGN KEY (`transaction_id`)
+    REFERENCES `pay_my_buddy`.`transactions` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `pay_my_buddy`.`balance_snapshots`
+-- Somme des ecritures du journal de chaque utilisateur jusqu'a entries_until (avancee periodiquement).
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `pay_my_buddy`.`balance_snapshots` (
+  `user_id` BIGINT NOT NULL,
+  `ledger_total` DECIMAL(12,2) NOT NULL,
+  `entries_until` TIMESTAMP NOT NULL,
+  `version` BIGINT NOT NULL,
+  PRIMARY KEY (`user_id`),
+  CONSTRAINT `fk_snapshot_user`
+    FOREIGN KEY (`user_id`)
+    REFERENCES `pay_my_buddy`.`users` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `pay_my_buddy`.`balance_slots`
+-- Sous-soldes des comptes tres sollicites (paymybuddy.balance.mode=sharded) : le solde est users.balance + la somme des slots.
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `pay_my_buddy`.`balance_slots` (
+  `user_id` BIGINT NOT NULL,
+  `slot` INT NOT NULL,
+  `balance` DECIMAL(8,2) NOT NULL,
+  PRIMARY KEY (`user_id`, `slot`),
+  CONSTRAINT `fk_slot_user`
+    FOREIGN KEY (`user_id`)
+    REFERENCES `pay_my_buddy`.`users` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `pay_my_buddy`.`monthly_rollups`
+-- Totaux mensuels par utilisateur et par interlocuteur (envoyes et recus), mis a jour dans la transaction de chaque transfert.
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `pay_my_buddy`.`monthly_rollups` (
+  `user_id` BIGINT NOT NULL,
+  `month` DATE NOT NULL,
+  `counterpart_id` BIGINT NOT NULL,
+  `sent_count` INT NOT NULL DEFAULT 0,
+  `sent_amount` DECIMAL(14,2) NOT NULL DEFAULT 0,
+  `received_count` INT NOT NULL DEFAULT 0,
+  `received_amount` DECIMAL(14,2) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`user_id`, `month`, `counterpart_id`),
+  INDEX `month_idx` (`month` ASC) VISIBLE,
+  INDEX `fk_rollup_counterpart_idx` (`counterpart_id` ASC) VISIBLE,
+  CONSTRAINT `fk_rollup_user`
+    FOREIGN KEY (`user_id`)
+    REFERENCES `pay_my_buddy`.`users` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION,
+  CONSTRAINT `fk_rollup_counterpart`
+    FOREIGN KEY (`counterpart_id`)
+    REFERENCES `pay_my_buddy`.`users` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `pay_my_buddy`.`id_generators`
+-- Blocs d'id reserves par Hibernate (@TableGenerator, optimiseur pooled) : une ligne par table.
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `pay_my_buddy`.`id_generators` (
+  `name` VARCHAR(255) NOT NULL,
+  `next_val` BIGINT NOT NULL,
+  PRIMARY KEY (`name`))
+ENGINE = InnoDB;
+
+-- next_val doit toujours etre au moins egal au plus grand id existant + la taille d'un bloc (50) pour ne jamais reutiliser un id.
+INSERT IGNORE INTO `pay_my_buddy`.`id_generators` (`name`, `next_val`) VALUES
+('users', (SELECT COALESCE(MAX(`id`), 0) + 50 FROM `pay_my_buddy`.`users`)),
+('connections', (SELECT COALESCE(MAX(`id`), 0) + 50 FROM `pay_my_buddy`.`connections`)),
+('transactions', (SELECT COALESCE(MAX(`id`), 0) + 50 FROM `pay_my_buddy`.`transactions`)),
+('ledger_entries', (SELECT COALESCE(MAX(`id`), 0) + 50 FROM `pay_my_buddy`.`ledger_entries`));
+
 SET SQL_MODE=@OLD_SQL_MODE;
 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS;
 SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS;
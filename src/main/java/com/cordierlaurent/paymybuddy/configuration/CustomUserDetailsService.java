@@ -29,6 +29,9 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ExpiringUserCache userCache;
+
     // Crée une liste d’autorités => Cette méthode transforme le rôle de l’utilisateur en une autorité compréhensible par Spring Security
     private List<SimpleGrantedAuthority> getGrantedAuthorities(String role) {
         List<SimpleGrantedAuthority> authorities = new ArrayList<>();
@@ -40,7 +43,13 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         // e-mail toujours en minuscule.
-        String normalizedEmail = email.trim().toLowerCase();
+        String normalizedEmail = ExpiringUserCache.normalize(email);
+        // connexions répétées et appels d'API (HTTP basic) : l'utilisateur est relu en mémoire plutôt que dans la table users.
+        UserDetails cachedUser = userCache.getUserFromCache(normalizedEmail);
+        if (cachedUser != null) {
+            return cachedUser;
+        }
+        long version = userCache.getVersion(normalizedEmail);
         log.debug("Recherche de l'utilisateur par email = {}", normalizedEmail);
         User user = userRepository.findByEmail(normalizedEmail)
                 .orElseThrow(() -> {
@@ -57,10 +66,13 @@ public class CustomUserDetailsService implements UserDetailsService {
         Le retour est un objet UserDetails, qui est une interface utilisée par Spring Security pour représenter un utilisateur authentifié.            
         */
        // new org.springframework.security.core.userdetails.User pour éviter confusion avec model.User.
-        return new org.springframework.security.core.userdetails.User(
+        UserDetails userDetails = new org.springframework.security.core.userdetails.User(
                 user.getEmail(),
                 user.getPassword(),
                 getGrantedAuthorities(user.getRole())
         );
+        // pas gardé si le profil a été modifié pendant la lecture (ancien mot de passe possible).
+        userCache.putUserInCache(userDetails, version);
+        return userDetails;
     }
 }
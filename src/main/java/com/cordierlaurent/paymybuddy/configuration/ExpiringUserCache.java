@@ -0,0 +1,117 @@
+package com.cordierlaurent.paymybuddy.configuration;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.cordierlaurent.paymybuddy.util.ExpiringCache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Cache of the users loaded for the authentication, keyed by normalized email.
+ * <p>
+ * Repeated logins and the API calls (HTTP basic, authenticated at each call) read the user from memory instead of the users table,
+ * for at most paymybuddy.users.cache.ttl-seconds. The user is removed when their profile is updated.
+ * The hits and misses are counted in the metric paymybuddy.users.cache.
+ * </p>
+ */
+@Component
+@Log4j2
+public class ExpiringUserCache implements UserCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // nombre maximum d'utilisateurs gardés (les plus anciens sont évincés) et durée (en s).
+    @Value("${paymybuddy.users.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${paymybuddy.users.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private ExpiringCache<String, UserDetails> users;
+
+    private Counter hits;
+
+    private Counter misses;
+
+    @PostConstruct
+    void init() {
+        users = new ExpiringCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+        hits = Counter.builder("paymybuddy.users.cache").tag("result", "hit")
+                .description("Users authenticated from the cache").register(meterRegistry);
+        misses = Counter.builder("paymybuddy.users.cache").tag("result", "miss")
+                .description("Users authenticated from the database").register(meterRegistry);
+        Gauge.builder("paymybuddy.users.cache.size", users, ExpiringCache::size)
+                .description("Users kept in the authentication cache").register(meterRegistry);
+    }
+
+    /**
+     * Normalizes an email as stored in the database (the key of the cache).
+     *
+     * @param email The email.
+     * @return The email without surrounding spaces, in lower case.
+     */
+    public static String normalize(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    /**
+     * Returns a copy of the cached user: Spring Security erases the password of the UserDetails after the authentication,
+     * the cached instance must not be handed out.
+     */
+    @Override
+    public UserDetails getUserFromCache(String email) {
+        UserDetails user = users.get(normalize(email));
+        if (user == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return User.withUserDetails(user).build();
+    }
+
+    /**
+     * Keeps a copy of a user loaded from the database, unless this user was removed from the cache since getVersion(email) was read.
+     * <p>
+     * Same principle as UserHistoryCache: a user read while their profile is updated may have the old password.
+     * </p>
+     *
+     * @param user    The user loaded.
+     * @param version The value of getVersion(email) read before the load.
+     */
+    public void putUserInCache(UserDetails user, long version) {
+        users.putIfUnchanged(normalize(user.getUsername()), User.withUserDetails(user).build(), version);
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        users.put(normalize(user.getUsername()), User.withUserDetails(user).build());
+    }
+
+    @Override
+    public void removeUserFromCache(String email) {
+        users.invalidate(normalize(email));
+        log.debug("removeUserFromCache,email="+email);
+    }
+
+    /**
+     * Returns the version of a user in the cache, read before loading them from the database.
+     *
+     * @param email The email of the user.
+     * @return The version, changed by each removal of this user.
+     */
+    public long getVersion(String email) {
+        return users.version(normalize(email));
+    }
+}
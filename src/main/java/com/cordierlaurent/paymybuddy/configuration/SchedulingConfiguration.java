@@ -0,0 +1,13 @@
+package com.cordierlaurent.paymybuddy.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the scheduled background tasks (@Scheduled), such as the compaction of the ledger.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+
+}
@@ -3,10 +3,13 @@ package com.cordierlaurent.paymybuddy.configuration;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
@@ -22,6 +25,7 @@ import org.springframework.security.web.authentication.AuthenticationSuccessHand
  * <ul>
  *     <li>Definition of access authorizations</li>
  *     <li>Customizing authentication and redirection after login</li>
+ *     <li>HTTP basic authentication for API calls</li>
  *     <li>Managing disconnection and session invalidation</li>
  *     <li>Configuring Password Encryption</li>
  * </ul>
@@ -44,6 +48,24 @@ public class SpringSecurityConfiguration {
     S’il en trouve un, il l’applique.
     S’il n’en trouve pas, il applique une configuration de sécurité par défaut (tout est protégé).
    */
+    /*
+    Chaîne de sécurité dédiée aux API d'administration (/admin/api/**) appelées par une application et non par un navigateur :
+        - @Order(1) => examinée avant la chaîne principale, elle ne s'applique qu'aux URL de securityMatcher.
+        - authentification HTTP basic (pas de redirection vers la page de login, 401 si non authentifié).
+        - pas de session ni de CSRF (pas de formulaire ni de cookie).
+    */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain apiSecurityFilterChain(HttpSecurity http) throws Exception {
+        return http
+                .securityMatcher("/admin/api/**")
+                .authorizeHttpRequests(auth -> auth.anyRequest().hasRole("ADMIN"))
+                .httpBasic(Customizer.withDefaults())
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .build();
+    }
+
     @Bean
     // SecurityFilterChain => un ensemble de règles de sécurité : collection de filtres de sécurité.
     /*
@@ -74,6 +96,8 @@ public class SpringSecurityConfiguration {
                     ** protège toute l'interface admin et ses sous-pages.
                     */
                     auth.requestMatchers("/admin/**").hasRole("ADMIN");
+                    // les métriques de l'application (actuator) ne sont visibles que par l'administrateur.
+                    auth.requestMatchers("/actuator/**").hasRole("ADMIN");
                     /*
                     Seuls les utilisateurs ayant le rôle USER peuvent accéder à /user.
                     Un USER peut accéder à /user, mais pas à /admin.
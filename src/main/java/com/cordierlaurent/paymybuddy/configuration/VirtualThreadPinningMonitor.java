@@ -0,0 +1,108 @@
+package com.cordierlaurent.paymybuddy.configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Watches the virtual threads pinned to their carrier thread, when the virtual thread mode is enabled (spring.threads.virtual.enabled).
+ * <p>
+ * A virtual thread blocking inside a synchronized block (or a native call) keeps its carrier thread: with few carriers, a pinned JDBC call
+ * can stall every request. The JDK reports these pins as JFR events (jdk.VirtualThreadPinned); this monitor streams them in process,
+ * logs the pins longer than paymybuddy.virtual-threads.pinning.threshold-ms with their stack, and counts them in the Micrometer counter
+ * paymybuddy.virtualthreads.pinned, tagged jdbc=true when the stack goes through the JDBC driver or the connection pool.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Log4j2
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    // paquets du chemin JDBC : driver MySQL, pool Hikari et API JDBC.
+    private static final List<String> JDBC_PACKAGES = List.of("com.mysql.", "com.zaxxer.hikari.", "java.sql.", "javax.sql.");
+
+    // nombre maximum de lignes de pile dans les logs.
+    private static final int MAX_FRAMES = 12;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${paymybuddy.virtual-threads.pinning.enabled:true}")
+    private boolean enabled;
+
+    // durée minimum (en ms) d'un blocage signalé.
+    @Value("${paymybuddy.virtual-threads.pinning.threshold-ms:20}")
+    private long thresholdMs;
+
+    private RecordingStream recordingStream;
+
+    private Counter jdbcPins;
+
+    private Counter otherPins;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        jdbcPins = Counter.builder("paymybuddy.virtualthreads.pinned").tag("jdbc", "true")
+                .description("Virtual threads pinned to their carrier").register(meterRegistry);
+        otherPins = Counter.builder("paymybuddy.virtualthreads.pinned").tag("jdbc", "false")
+                .description("Virtual threads pinned to their carrier").register(meterRegistry);
+
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        // lecture des événements dans un thread dédié du JDK.
+        recordingStream.startAsync();
+        log.info("VirtualThreadPinningMonitor,thresholdMs="+thresholdMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+        boolean jdbc = frames.stream().anyMatch(VirtualThreadPinningMonitor::isJdbcFrame);
+        (jdbc ? jdbcPins : otherPins).increment();
+
+        StringBuilder stack = new StringBuilder();
+        for (int i = 0; i < Math.min(frames.size(), MAX_FRAMES); i++) {
+            RecordedFrame frame = frames.get(i);
+            stack.append("\n\tat ").append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName())
+                 .append(':').append(frame.getLineNumber());
+        }
+        // dans le chemin JDBC, le blocage dure le temps de la requête SQL : à corriger en priorité.
+        String message = "thread virtuel bloqué sur son carrier "+event.getDuration().toMillis()+" ms"+(jdbc ? " (chemin JDBC)" : "")+stack;
+        if (jdbc) {
+            log.error(message);
+        } else {
+            log.warn(message);
+        }
+    }
+
+    private static boolean isJdbcFrame(RecordedFrame frame) {
+        String type = frame.getMethod().getType().getName();
+        return JDBC_PACKAGES.stream().anyMatch(type::startsWith);
+    }
+
+}
@@ -1,13 +1,23 @@
 package com.cordierlaurent.paymybuddy.controller;
 
-import java.util.List;
+import java.time.LocalDate;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.cordierlaurent.paymybuddy.dto.AdminTransactionDTO;
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionFilterDTO;
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionPageDTO;
+import com.cordierlaurent.paymybuddy.service.TransactionExportService;
 import com.cordierlaurent.paymybuddy.service.TransactionService;
 
 import lombok.extern.log4j.Log4j2;
@@ -15,7 +25,7 @@ import lombok.extern.log4j.Log4j2;
 /**
  * Controller for the management of administrative operations related to transactions.
  * <p>
- * This class allows administrators to view a list of all transactions made by system users.
+ * This class allows administrators to view a list of all transactions made by system users, and to export them as a file.
  * </p>
  */
 @Controller
@@ -25,26 +35,65 @@ public class AdminController {
     @Autowired 
     TransactionService transactionService;
     
+    @Autowired 
+    TransactionExportService transactionExportService;
+    
     // .......................partie admin pour tests.................................
     /**
-     * Displays the list of transactions for administration.
+     * Displays one page of the list of transactions for administration, filtered and sorted.
      * 
+     * @param filter The filters, the sort and the page number, read from the request parameters.
      * @param model The model for passing data to the Thymeleaf view.
      * @return The name of the Thymeleaf view.
      */    
     @GetMapping("/admin/transactions")
-    public String displayAdminTransactions(Model model) {
-        log.debug("GetMapping/admin/transactions");
+    public String displayAdminTransactions(@ModelAttribute("filter") AdminTransactionFilterDTO filter, Model model) {
+        log.debug("GetMapping/admin/transactions,filter="+filter);
         
-        List<AdminTransactionDTO> transactions = transactionService.getAllTransactions();
-        // pour test affichage vide.
-        //transactions.clear();
+        AdminTransactionPageDTO page = transactionService.getAdminTransactions(filter);
         
         // permet d’ajouter à Model un objet de mon choix.
-        model.addAttribute("transactions", transactions);
+        model.addAttribute("transactions", page.getTransactions());
+        model.addAttribute("page", page);
         
         // Retourne la vue affichant les transactions dans la page admin_transactions.html
         return "admin_transactions"; 
     }
 
+    /**
+     * Exports the transactions as a file, streamed to the client while it is read from the database.
+     * 
+     * @param format The format of the file : csv or ndjson.
+     * @param from The first day exported (included), or null.
+     * @param to The last day exported (included), or null.
+     * @param userId The user whose sent and received transactions are exported, or null for all users.
+     * @param gzip True to compress the file on the fly.
+     * @return The response whose body is written after the method returns, in another thread.
+     * @throws IllegalArgumentException If the format is unknown.
+     */
+    @GetMapping("/admin/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(defaultValue = TransactionExportService.FORMAT_CSV) String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        log.debug("GetMapping/admin/transactions/export,format="+format+",from="+from+",to="+to+",userId="+userId+",gzip="+gzip);
+
+        // vérifié avant de commencer la réponse : une erreur ensuite ne pourrait plus afficher la page d'erreur.
+        transactionExportService.checkFormat(format);
+
+        String fileName = "transactions." + format + (gzip ? ".gz" : "");
+        MediaType mediaType = gzip ? MediaType.parseMediaType("application/gzip")
+                : TransactionExportService.FORMAT_CSV.equals(format) ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+                : MediaType.parseMediaType("application/x-ndjson;charset=UTF-8");
+
+        // StreamingResponseBody : les lignes sont écrites dans la réponse au fur et à mesure de la lecture, rien n'est gardé en mémoire.
+        StreamingResponseBody body = output -> transactionExportService.export(format, from, to, userId, gzip, output);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
 }
@@ -0,0 +1,45 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cordierlaurent.paymybuddy.service.ShardedBalanceServiceImpl;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * REST controller for the balance slots of the hot accounts (paymybuddy.balance.mode=sharded).
+ * <p>
+ * This controller allows an administrator to split the balance of an account receiving many transfers into slots.
+ * </p>
+ */
+@RestController
+@ConditionalOnProperty(name = "paymybuddy.balance.mode", havingValue = "sharded")
+@Log4j2
+@RequestMapping("/admin/api/accounts")
+public class BalanceSlotApiController {
+
+    @Autowired
+    private ShardedBalanceServiceImpl shardedBalanceService;
+
+    /**
+     * Creates the balance slots of an account (the existing slots are kept).
+     *
+     * @param userId The ID of the account.
+     * @return The number of slots of the account.
+     */
+    @PostMapping("/{userId}/balance-slots")
+    public ResponseEntity<Map<String, Integer>> enableSlots(@PathVariable Long userId) {
+        log.info("PostMapping/admin/api/accounts/"+userId+"/balance-slots");
+
+        return ResponseEntity.ok(Map.of("slots", shardedBalanceService.enableSlots(userId)));
+    }
+
+}
@@ -1,6 +1,9 @@
 package com.cordierlaurent.paymybuddy.controller;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -9,7 +12,10 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import com.cordierlaurent.paymybuddy.dto.ConnectionImportRequestDTO;
+import com.cordierlaurent.paymybuddy.dto.ConnectionImportResultDTO;
 import com.cordierlaurent.paymybuddy.dto.ConnectionRequestDTO;
 import com.cordierlaurent.paymybuddy.model.User;
 import com.cordierlaurent.paymybuddy.service.ConnectionService;
@@ -22,7 +28,7 @@ import lombok.extern.log4j.Log4j2;
 /**
  * Controller managing the addition of connections between users.
  * <p>
- * This controller displays the connection addition form and processes requests to add a relationship between users.
+ * This controller displays the connection addition form and processes requests to add a relationship between users, one by one or by importing a list of emails.
  * </p>
  */
 @Controller
@@ -38,17 +44,21 @@ public class ConnectionController {
     /**
      * Displays the connection management form.
      * <p>
-     * This method initializes a ConnectionRequestDTO object and adds it to the model for use in the Thymeleaf form.
+     * This method initializes a ConnectionRequestDTO object and adds it to the model for use in the Thymeleaf form,
+     * with the suggestions of users the logged-in user may know.
      * </p>
      *
+     * @param principal Contains the authenticated user's information.
      * @param model The model for passing data to the Thymeleaf view.
      * @return The name of the Thymeleaf view.
      */
     @GetMapping("/connection")
-    public String displayConnectionForm(Model model) {
+    public String displayConnectionForm(Principal principal, Model model) {
         log.debug("GetMapping/connection");
         
         model.addAttribute("connectionRequest", new ConnectionRequestDTO());
+        model.addAttribute("connectionImportRequest", new ConnectionImportRequestDTO());
+        addSuggestions(model, userService.getAuthenticatedUser(principal));
 
         return "connection"; 
     }    
@@ -76,15 +86,17 @@ public class ConnectionController {
             Model model) {
         log.debug("PostMapping/connection,connectionRequest="+connectionRequest);
         
+        model.addAttribute("connectionImportRequest", new ConnectionImportRequestDTO());
+        // Récupère l'utilisateur connecté
+        User user = userService.getAuthenticatedUser(principal);
         if (bindingResult.hasErrors()) {
+            addSuggestions(model, user);
             return "connection";
         }
         
-        // Récupère l'utilisateur connecté
-        User user = userService.getAuthenticatedUser(principal);
-        
         Result result = connectionService.add(user, connectionRequest.getEmail());
         log.info(user.getEmail()+"=>"+result.getMessage());
+        addSuggestions(model, user);
 
         if (result.isSuccess()) {
             model.addAttribute("successMessage", result.getMessage());
@@ -97,4 +109,84 @@ public class ConnectionController {
         return "connection";
     }
 
+    /**
+     * Handles adding a connection chosen in the suggestions or in the search results, by the ID of the user.
+     *
+     * @param friendId The ID of the user to add as a connection.
+     * @param principal Contains the authenticated user's information.
+     * @param model The model for passing data to the Thymeleaf view.
+     * @return The view updated with a success or error message.
+     */
+    @PostMapping("/connection/friend")
+    public String addConnectionById(@RequestParam(required = false) Long friendId, Principal principal, Model model) {
+        log.debug("PostMapping/connection/friend,friendId="+friendId);
+
+        model.addAttribute("connectionRequest", new ConnectionRequestDTO());
+        model.addAttribute("connectionImportRequest", new ConnectionImportRequestDTO());
+        User user = userService.getAuthenticatedUser(principal);
+
+        Result result = connectionService.addById(user, friendId);
+        log.info(user.getEmail()+"=>"+result.getMessage());
+        addSuggestions(model, user);
+
+        model.addAttribute(result.isSuccess() ? "successMessage" : "errorMessage", result.getMessage());
+        return "connection";
+    }
+
+    /**
+     * Handles the import of several connections at once.
+     * <p>
+     * The emails of the text area and of the CSV file are added together, and the outcome of each email is displayed.
+     * </p>
+     *
+     * @param connectionImportRequest Contains the pasted list of emails and/or the CSV file.
+     * @param principal Contains the authenticated user's information.
+     * @param model The model for passing data to the Thymeleaf view.
+     * @return The view with the outcome of each email, or an error message.
+     * @throws IOException If the file cannot be read.
+     */
+    @PostMapping("/connection/import")
+    public String importConnections(
+            @ModelAttribute("connectionImportRequest") ConnectionImportRequestDTO connectionImportRequest,
+            Principal principal, 
+            Model model) throws IOException {
+        log.debug("PostMapping/connection/import");
+        
+        model.addAttribute("connectionRequest", new ConnectionRequestDTO());
+        User user = userService.getAuthenticatedUser(principal);
+        
+        String text = connectionImportRequest.getEmails() == null ? "" : connectionImportRequest.getEmails();
+        if (connectionImportRequest.getFile() != null && !connectionImportRequest.getFile().isEmpty()) {
+            text += "\n" + new String(connectionImportRequest.getFile().getBytes(), StandardCharsets.UTF_8);
+        }
+        List<String> emails = connectionService.splitEmails(text);
+        if (emails.isEmpty()) {
+            model.addAttribute("errorMessage", "Aucun e-mail à importer");
+            addSuggestions(model, user);
+            return "connection";
+        }
+        if (emails.size() > connectionService.getImportMaxSize()) {
+            model.addAttribute("errorMessage", "Import limité à " + connectionService.getImportMaxSize() + " e-mails (" + emails.size() + " reçus)");
+            addSuggestions(model, user);
+            return "connection";
+        }
+
+        List<ConnectionImportResultDTO> results = connectionService.importConnections(user, emails);
+        long added = results.stream().filter(ConnectionImportResultDTO::isSuccess).count();
+        log.info(user.getEmail()+"=>import,emails="+emails.size()+",added="+added);
+
+        model.addAttribute("importResults", results);
+        addSuggestions(model, user);
+        model.addAttribute("successMessage", added + " relation(s) ajoutée(s) sur " + emails.size() + " e-mail(s)");
+        // Réinitialisation du formulaire (plus ergonomique).
+        model.addAttribute("connectionImportRequest", new ConnectionImportRequestDTO());
+        
+        return "connection";
+    }
+
+    // suggestions affichées sous les formulaires, recalculées après un ajout (l'utilisateur ajouté n'est plus suggéré).
+    private void addSuggestions(Model model, User user) {
+        model.addAttribute("suggestions", connectionService.getSuggestions(user.getId()));
+    }
+
 }
@@ -0,0 +1,69 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cordierlaurent.paymybuddy.dto.MonthlyTotalDTO;
+import com.cordierlaurent.paymybuddy.service.MonthlyRollupService;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * REST controller for the monthly totals of the users (statements and administration).
+ */
+@RestController
+@Log4j2
+@RequestMapping("/admin/api/rollups")
+public class MonthlyRollupApiController {
+
+    @Autowired
+    private MonthlyRollupService monthlyRollupService;
+
+    /**
+     * Retrieves the monthly totals sent and received by a user, per counterpart.
+     *
+     * @param userId The user ID.
+     * @param from The first month (AAAA-MM).
+     * @param to The last month (AAAA-MM, included).
+     * @return The totals, by month then by counterpart name.
+     */
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<List<MonthlyTotalDTO>> getMonthlyTotals(
+            @PathVariable Long userId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth to) {
+        log.info("GetMapping/admin/api/rollups/users/"+userId+",from="+from+",to="+to);
+
+        return ResponseEntity.ok(monthlyRollupService.getMonthlyTotals(userId, from, to));
+    }
+
+    /**
+     * Rebuilds the monthly totals from the transactions (after a migration, or to repair them).
+     *
+     * @param from The first month rebuilt (AAAA-MM), by default the month of the oldest transaction.
+     * @param to The last month rebuilt (AAAA-MM, included), by default the current month.
+     * @return The number of months rebuilt.
+     */
+    @PostMapping("/backfill")
+    public ResponseEntity<Map<String, Integer>> backfill(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth to) {
+        log.info("PostMapping/admin/api/rollups/backfill,from="+from+",to="+to);
+
+        YearMonth first = from != null ? from : monthlyRollupService.getFirstMonth();
+        YearMonth last = to != null ? to : monthlyRollupService.currentMonth();
+        return ResponseEntity.ok(Map.of("months", monthlyRollupService.backfill(first, last)));
+    }
+
+}
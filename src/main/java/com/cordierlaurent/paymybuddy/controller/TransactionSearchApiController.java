@@ -0,0 +1,50 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cordierlaurent.paymybuddy.dto.UserTransactionDTO;
+import com.cordierlaurent.paymybuddy.service.TransactionSearchIndex;
+import com.cordierlaurent.paymybuddy.service.TransactionService;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * REST controller for searching the transactions of a user by the words of their description (support).
+ */
+@RestController
+@Log4j2
+@RequestMapping("/admin/api/transactions")
+public class TransactionSearchApiController {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionSearchIndex transactionSearchIndex;
+
+    /**
+     * Searches the transactions sent and received by a user.
+     *
+     * @param userId The user ID.
+     * @param q The words searched, each one can be the beginning of a word.
+     * @return The transactions found, from newest to oldest, or 503 (Service Unavailable) while the search index is being rebuilt.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<UserTransactionDTO>> searchTransactions(@RequestParam Long userId, @RequestParam String q) {
+        log.info("GetMapping/admin/api/transactions/search,userId="+userId+",q="+q);
+
+        if (!transactionSearchIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(transactionService.searchUserTransactions(userId, q));
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cordierlaurent.paymybuddy.dto.TransferItemRequestDTO;
+import com.cordierlaurent.paymybuddy.dto.TransferItemResultDTO;
+import com.cordierlaurent.paymybuddy.service.BatchTransferService;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * REST controller for transfers made by the administration.
+ * <p>
+ * This controller allows an administrator (or a back-office application using HTTP basic authentication) to apply a batch of transfers between users in a single call.
+ * </p>
+ */
+@RestController
+@Log4j2
+@RequestMapping("/admin/api/transfers")
+public class TransferApiController {
+
+    @Autowired
+    private BatchTransferService batchTransferService;
+
+    /**
+     * Applies a batch of transfers in a single database transaction.
+     *
+     * @param transfers The list of transfers (senderId, receiverId, description, amount).
+     * @return The outcome of each transfer in the order of the request, or 400 if the batch is too large.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<TransferItemResultDTO>> addTransfers(@RequestBody List<TransferItemRequestDTO> transfers) {
+        log.info("PostMapping/admin/api/transfers/batch,size="+transfers.size());
+
+        if (transfers.size() > batchTransferService.getMaxSize()) {
+            log.warn("Lot trop grand : "+transfers.size()+" > "+batchTransferService.getMaxSize());
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok(batchTransferService.addTransactions(transfers));
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.cordierlaurent.paymybuddy.controller;
 
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -9,14 +11,21 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import com.cordierlaurent.paymybuddy.dto.FriendDTO;
 import com.cordierlaurent.paymybuddy.dto.TransactionRequestDTO;
+import com.cordierlaurent.paymybuddy.dto.UserTransactionPageDTO;
 import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.service.BalanceService;
 import com.cordierlaurent.paymybuddy.service.ConnectionService;
+import com.cordierlaurent.paymybuddy.service.RecentRecipientsService;
 import com.cordierlaurent.paymybuddy.service.TransactionService;
 import com.cordierlaurent.paymybuddy.service.UserService;
 import com.cordierlaurent.paymybuddy.util.Result;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.extern.log4j.Log4j2;
 
@@ -34,37 +43,123 @@ public class TransferController {
     private UserService userService;  
         
     @Autowired
-    private ConnectionService connectionService;
+    private TransactionService transactionService;
     
     @Autowired
-    private TransactionService transactionService;
+    private BalanceService balanceService;
+
+    @Autowired
+    private RecentRecipientsService recentRecipientsService;
+
+    @Autowired
+    private ConnectionService connectionService;
    
     /**
      * Displays the money transfer form.
      * <p>
-     * This method retrieves the logged-in user's information, their friends list, and their transaction history to display on the transfer page.
+     * This method retrieves the logged-in user's information, their most likely recipients, and one page of their transaction history to display on the transfer page.
      * </p>
      *
+     * @param cursor The token of the history page to display, or null for the most recent transactions.
+     * @param q The words searched in the descriptions: the history then displays the transactions found instead of a page.
+     * @param friend The beginning of the name or email of a friend searched without javascript: the list then displays the friends found.
      * @param principal Contains the authenticated user's information.
      * @param model The model for passing data to the Thymeleaf view.
      * @return The "transfer" view displaying the transfer form.
      */
     @GetMapping("/transfer")
-    public String displayTransferForm(Principal principal, Model model) {
-        log.debug("GetMapping/transfer");
+    public String displayTransferForm(@RequestParam(required = false) String cursor, @RequestParam(required = false) String q,
+            @RequestParam(required = false) String friend, Principal principal, Model model) {
+        log.debug("GetMapping/transfer,cursor="+cursor+",q="+q+",friend="+friend);
 
         User user = userService.getAuthenticatedUser(principal);
         
-        // new ... = objet vide pour faire le lien avec le formulaire Thymeleaf.
-        model.addAttribute("transactionRequest", new TransactionRequestDTO());
+        // objet vide pour faire le lien avec le formulaire Thymeleaf, avec une nouvelle clé d'idempotence.
+        TransactionRequestDTO transactionRequest = TransactionRequestDTO.newForm();
+        model.addAttribute("transactionRequest", transactionRequest);
 
         model.addAttribute("user", user);
-        model.addAttribute("friends", connectionService.getFriends(user.getId()));
-        model.addAttribute("transactions", transactionService.getUserTransactionsDTOs(user.getId()));
+        model.addAttribute("balance", balanceService.getBalance(user.getId()));
+        if (friend != null && !friend.isBlank()) {
+            // recherche sans javascript : les relations trouvées remplacent les destinataires récents, une seule est sélectionnée.
+            List<FriendDTO> friends = searchFriends(user.getId(), friend);
+            model.addAttribute("friend", friend);
+            model.addAttribute("friends", friends);
+            if (friends.size() == 1) {
+                transactionRequest.setReceiverId(friends.get(0).getId());
+            }
+        } else {
+            addFriends(model, user.getId(), null);
+        }
+        if (q != null && !q.isBlank()) {
+            model.addAttribute("q", q);
+            model.addAttribute("transactions", transactionService.searchUserTransactions(user.getId(), q));
+        } else {
+            addHistory(model, user.getId(), cursor);
+        }
 
         return "transfer"; 
     }
     
+    /**
+     * Returns the next page of the transaction history, as table rows appended by the "load more" button.
+     *
+     * @param cursor The token of the page to display.
+     * @param principal Contains the authenticated user's information.
+     * @param model The model for passing data to the Thymeleaf view.
+     * @param response The response, carrying the token of the following page in the X-Next-Cursor header (absent on the last page).
+     * @return The "historyRows" fragment of the "transfer" view.
+     */
+    @GetMapping("/transfer/history")
+    public String displayHistoryPage(@RequestParam String cursor, Principal principal, Model model, HttpServletResponse response) {
+        log.debug("GetMapping/transfer/history,cursor="+cursor);
+
+        User user = userService.getAuthenticatedUser(principal);
+        UserTransactionPageDTO page = transactionService.getUserTransactionsPage(user.getId(), cursor);
+        model.addAttribute("transactions", page.getTransactions());
+        if (page.getNextCursor() != null) {
+            response.setHeader("X-Next-Cursor", page.getNextCursor());
+        }
+
+        return "transfer :: historyRows";
+    }
+    
+    /*
+    Destinataires récents puis autres amis, en nombre limité : les autres relations sont trouvées par la saisie semi-automatique.
+    La relation choisie (formulaire renvoyé avec une erreur) est ajoutée si elle n'en fait pas partie, pour rester sélectionnée.
+    */
+    private void addFriends(Model model, Long userId, Long receiverId) {
+        List<FriendDTO> friends = recentRecipientsService.getRecipients(userId);
+        if (receiverId != null && friends.stream().noneMatch(friend -> friend.getId().equals(receiverId))) {
+            List<FriendDTO> withReceiver = new ArrayList<>(friends);
+            connectionService.getFriends(userId).stream()
+                    .filter(friend -> friend.getId().equals(receiverId))
+                    .findFirst()
+                    .ifPresent(withReceiver::add);
+            friends = withReceiver;
+        }
+        model.addAttribute("friends", friends);
+    }
+
+    // relations dont un mot du nom ou l'e-mail commence par la saisie (toutes celles dont le nom la contient pendant le chargement de l'index).
+    private List<FriendDTO> searchFriends(Long userId, String query) {
+        try {
+            return connectionService.searchFriends(userId, query);
+        } catch (IllegalStateException e) {
+            String lowerQuery = query.trim().toLowerCase();
+            return connectionService.getFriends(userId).stream()
+                    .filter(friend -> friend.getName().toLowerCase().contains(lowerQuery))
+                    .toList();
+        }
+    }
+
+    // une page de l'historique (la première si cursor est null) et le jeton de la page suivante.
+    private void addHistory(Model model, Long userId, String cursor) {
+        UserTransactionPageDTO page = transactionService.getUserTransactionsPage(userId, cursor);
+        model.addAttribute("transactions", page.getTransactions());
+        model.addAttribute("nextCursor", page.getNextCursor());
+    }
+    
     
     /**
      * Process a money transfer.
@@ -74,9 +169,14 @@ public class TransferController {
      * Otherwise, an error message is returned.
      * </p>
      * <p>
+     * A transfer is made at most once per idempotency key: the key of the form (hidden field), or the Idempotency-Key header sent by an API gateway, which takes precedence.
+     * A replayed submission gets the result of the first one without moving the money again.
+     * </p>
+     * <p>
      * </p>
      *
      * @param transactionRequestDTO Transaction details provided by the user.
+     * @param idempotencyKeyHeader Optional Idempotency-Key header.
      * @param bindingResult  Result of form validation.
      * @param principal Contains the authenticated user's information.
      * @param model The model for passing data to the Thymeleaf view.
@@ -89,36 +189,47 @@ public class TransferController {
     public String processTransfer(
             @ModelAttribute("transactionRequest") @Valid TransactionRequestDTO transactionRequest,
             BindingResult bindingResult,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKeyHeader,
             Principal principal, 
             Model model) { 
         log.debug("PostMapping/transfer,transactionRequest="+transactionRequest);
         
         User sender = userService.getAuthenticatedUser(principal);
         
-        // toujours ajouter au moins le user sinon Thymeleaf plante en cas d'erreur sur la validation @Valid.
+        // toujours ajouter au moins le user et le solde sinon Thymeleaf plante en cas d'erreur sur la validation @Valid.
         model.addAttribute("user", sender);
+        model.addAttribute("balance", balanceService.getBalance(sender.getId()));
 
         // pour afficher le formulaire avec les erreurs automatiquement.
         if (bindingResult.hasErrors()) {
+            addFriends(model, sender.getId(), transactionRequest.getReceiverId());
             return "transfer"; 
         }
 
         User receiver = userService.getById(transactionRequest.getReceiverId());
 
-        Result result = transactionService.addTransaction(sender, receiver, transactionRequest.getDescription(), transactionRequest.getAmount());
+        String idempotencyKey = idempotencyKeyHeader != null ? idempotencyKeyHeader : transactionRequest.getIdempotencyKey();
+        // champ caché vide (ancien formulaire) => pas d'idempotence.
+        if (idempotencyKey != null && idempotencyKey.isBlank()) {
+            idempotencyKey = null;
+        }
+
+        Result result = transactionService.addTransaction(sender, receiver, transactionRequest.getDescription(), transactionRequest.getAmount(), idempotencyKey);
         log.info(sender.getEmail()+"=>"+result.getMessage());
         
         if (result.isSuccess()) {
             model.addAttribute("successMessage", result.getMessage());
-            model.addAttribute("transactionRequest", new TransactionRequestDTO());
+            model.addAttribute("transactionRequest", TransactionRequestDTO.newForm());
         } else {
             model.addAttribute("errorMessage", result.getMessage());
         }
 
-        // Cette partie est à recharger.
+        // Cette partie est à recharger (le solde est relu : les objets User sont détachés et, en mode ledger, la colonne n'est qu'une partie du solde).
         model.addAttribute("user", sender);
-        model.addAttribute("friends", connectionService.getFriends(sender.getId()));
-        model.addAttribute("transactions", transactionService.getUserTransactionsDTOs(sender.getId()));
+        model.addAttribute("balance", balanceService.getBalance(sender.getId()));
+        // après un succès, le formulaire est vide : la relation n'est plus sélectionnée.
+        addFriends(model, sender.getId(), result.isSuccess() ? null : transactionRequest.getReceiverId());
+        addHistory(model, sender.getId(), null);
         
         return "transfer";
         
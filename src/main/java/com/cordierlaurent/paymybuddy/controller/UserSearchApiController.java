@@ -0,0 +1,76 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import java.security.Principal;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cordierlaurent.paymybuddy.dto.FriendDTO;
+import com.cordierlaurent.paymybuddy.dto.UserSearchResultDTO;
+import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.service.ConnectionService;
+import com.cordierlaurent.paymybuddy.service.UserSearchIndex;
+import com.cordierlaurent.paymybuddy.service.UserService;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * REST controller for the typeahead searches of the logged-in user (friends on the transfer page, users on the connection page).
+ */
+@RestController
+@Log4j2
+@RequestMapping("/user/api")
+public class UserSearchApiController {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ConnectionService connectionService;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    /**
+     * Searches the friends of the logged-in user.
+     *
+     * @param q The beginning of a name or of an email.
+     * @param principal Contains the authenticated user's information.
+     * @return The friends found, by name, or 503 (Service Unavailable) while the search index is being loaded.
+     */
+    @GetMapping("/friends")
+    public ResponseEntity<List<FriendDTO>> searchFriends(@RequestParam String q, Principal principal) {
+        log.debug("GetMapping/user/api/friends,q="+q);
+
+        if (!userSearchIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        User user = userService.getAuthenticatedUser(principal);
+        return ResponseEntity.ok(connectionService.searchFriends(user.getId(), q));
+    }
+
+    /**
+     * Searches the users the logged-in user may add as a connection.
+     *
+     * @param q The beginning of a name, or of an email (from its part before '@').
+     * @param principal Contains the authenticated user's information.
+     * @return The users found, or 503 (Service Unavailable) while the search index is being loaded.
+     */
+    @GetMapping("/users")
+    public ResponseEntity<List<UserSearchResultDTO>> searchUsers(@RequestParam String q, Principal principal) {
+        log.debug("GetMapping/user/api/users,q="+q);
+
+        if (!userSearchIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        User user = userService.getAuthenticatedUser(principal);
+        return ResponseEntity.ok(userService.searchUsers(user, q));
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * For the filters, sort and page of the list of transactions for the administrator.
+ * <p>
+ * Every filter is optional: a null (or blank) filter is not applied.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+public class AdminTransactionFilterDTO {
+
+    /** Sort by creation date. */
+    public static final String SORT_DATE = "date";
+
+    /** Sort by amount. */
+    public static final String SORT_AMOUNT = "amount";
+
+    private String senderEmail;
+
+    private String receiverEmail;
+
+    private BigDecimal minAmount;
+
+    private BigDecimal maxAmount;
+
+    // jour de début et jour de fin inclus.
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+
+    // date ou amount.
+    private String sort = SORT_DATE;
+
+    // true : ordre croissant, false : décroissant (les plus récentes ou les plus gros montants en premier).
+    private boolean ascending;
+
+    // numéro de page, à partir de 0.
+    private int page;
+
+}
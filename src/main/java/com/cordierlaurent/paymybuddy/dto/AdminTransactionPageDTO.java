@@ -0,0 +1,30 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * For displaying one page of the list of transactions for the administrator.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class AdminTransactionPageDTO {
+
+    private List<AdminTransactionDTO> transactions;
+    // à partir de 0.
+    private int pageNumber;
+    private boolean hasNext;
+    // nombre de transactions correspondant aux filtres, en cache : peut être en retard de quelques transactions.
+    private long estimatedTotal;
+
+    public AdminTransactionPageDTO(List<AdminTransactionDTO> transactions, int pageNumber, boolean hasNext, long estimatedTotal) {
+        this.transactions = transactions;
+        this.pageNumber = pageNumber;
+        this.hasNext = hasNext;
+        this.estimatedTotal = estimatedTotal;
+    }
+}
@@ -0,0 +1,21 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * For the form importing several connections at once, from a pasted list of emails and/or a CSV file.
+ */
+@Data
+@NoArgsConstructor
+public class ConnectionImportRequestDTO {
+
+    // emails séparés par des espaces, retours à la ligne, virgules ou points-virgules.
+    private String emails;
+
+    // fichier CSV facultatif (export de carnet d'adresses), lu avec les mêmes séparateurs.
+    private MultipartFile file;
+
+}
@@ -0,0 +1,25 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import lombok.Value;
+
+/**
+ * For displaying the outcome of one email of a connection import.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class ConnectionImportResultDTO {
+
+    // email normalisé (sans espaces, en minuscules).
+    private String email;
+    private boolean success;
+    private String message;
+
+    public ConnectionImportResultDTO(String email, boolean success, String message) {
+        this.email = email;
+        this.success = success;
+        this.message = message;
+    }
+}
@@ -0,0 +1,22 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import lombok.Value;
+
+/**
+ * For reading a connection as a pair of user IDs, without loading the users.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class ConnectionPairDTO {
+
+    private Long userId;
+    private Long friendId;
+
+    public ConnectionPairDTO(Long userId, Long friendId) {
+        this.userId = userId;
+        this.friendId = friendId;
+    }
+}
@@ -0,0 +1,22 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import lombok.Value;
+
+/**
+ * For displaying a friend in the list of the transfer page, without loading the user.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class FriendDTO {
+
+    private Long id;
+    private String name;
+
+    public FriendDTO(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+}
@@ -0,0 +1,25 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import lombok.Value;
+
+/**
+ * For displaying a suggested connection ("people you may know") with the number of friends in common.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class FriendSuggestionDTO {
+
+    private Long id;
+    // l'ajout en un clic envoie l'id : l'e-mail d'un utilisateur qui n'est pas une relation n'est pas envoyé au navigateur.
+    private String name;
+    private int mutualFriends;
+
+    public FriendSuggestionDTO(Long id, String name, int mutualFriends) {
+        this.id = id;
+        this.name = name;
+        this.mutualFriends = mutualFriends;
+    }
+}
@@ -0,0 +1,35 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import java.math.BigDecimal;
+
+import lombok.Value;
+
+/**
+ * For comparing a replayed transfer with the transfer already made with the same idempotency key: its receiver and its amount.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class IdempotentTransferDTO {
+
+    private Long receiverId;
+    private BigDecimal amount;
+
+    public IdempotentTransferDTO(Long receiverId, BigDecimal amount) {
+        this.receiverId = receiverId;
+        this.amount = amount;
+    }
+
+    /**
+     * Indicates whether a transfer is the same as this one (a replay) and not a different transfer reusing the key.
+     *
+     * @param receiverId The receiver ID of the transfer.
+     * @param amount     The amount of the transfer (10 and 10.00 are the same amount).
+     * @return True if the receiver and the amount are the same.
+     */
+    public boolean matches(Long receiverId, BigDecimal amount) {
+        return this.receiverId.equals(receiverId) && this.amount.compareTo(amount) == 0;
+    }
+}
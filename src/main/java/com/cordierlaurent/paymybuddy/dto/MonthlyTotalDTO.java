@@ -0,0 +1,33 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import java.math.BigDecimal;
+
+import lombok.Value;
+
+/**
+ * For displaying the totals of one month between a user and one counterpart.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class MonthlyTotalDTO {
+
+    // format AAAA-MM.
+    private String month;
+    private String counterpartName;
+    private int sentCount;
+    private BigDecimal sentAmount;
+    private int receivedCount;
+    private BigDecimal receivedAmount;
+
+    public MonthlyTotalDTO(String month, String counterpartName, int sentCount, BigDecimal sentAmount, int receivedCount, BigDecimal receivedAmount) {
+        this.month = month;
+        this.counterpartName = counterpartName;
+        this.sentCount = sentCount;
+        this.sentAmount = sentAmount;
+        this.receivedCount = receivedCount;
+        this.receivedAmount = receivedAmount;
+    }
+}
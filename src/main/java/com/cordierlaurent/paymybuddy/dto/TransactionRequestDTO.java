@@ -1,10 +1,12 @@
 package com.cordierlaurent.paymybuddy.dto;
 
 import java.math.BigDecimal;
+import java.util.UUID;
 
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -27,4 +29,23 @@ public class TransactionRequestDTO {
     @NotNull(message = "Le montant est requis")
     @DecimalMin(value = "0.01", message = "Le montant doit être supérieur à 0")
     private BigDecimal amount;
+
+    // clé d'idempotence générée à l'affichage du formulaire (champ caché) : une double soumission n'est exécutée qu'une fois.
+    @Size(max = 64, message = "La clé d'idempotence est trop longue")
+    private String idempotencyKey;
+
+    public TransactionRequestDTO(Long receiverId, String description, BigDecimal amount) {
+        this(receiverId, description, amount, null);
+    }
+
+    /**
+     * Creates an empty request with a new idempotency key, for a new transfer form.
+     *
+     * @return The empty request.
+     */
+    public static TransactionRequestDTO newForm() {
+        TransactionRequestDTO transactionRequest = new TransactionRequestDTO();
+        transactionRequest.setIdempotencyKey(UUID.randomUUID().toString());
+        return transactionRequest;
+    }
 }
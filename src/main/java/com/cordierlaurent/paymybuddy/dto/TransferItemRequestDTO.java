@@ -0,0 +1,24 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * For one transfer of a batch of transfers.
+ * <p>
+ * No validation annotations: each transfer of the batch is checked by the service, which reports the error for this transfer only.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferItemRequestDTO {
+
+    private Long senderId;
+    private Long receiverId;
+    private String description;
+    private BigDecimal amount;
+}
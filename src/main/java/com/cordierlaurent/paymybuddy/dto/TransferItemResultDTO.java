@@ -0,0 +1,25 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import lombok.Value;
+
+/**
+ * For returning the outcome of one transfer of a batch of transfers.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class TransferItemResultDTO {
+
+    // position du transfert dans la requête.
+    private int index;
+    private boolean success;
+    private String message;
+
+    public TransferItemResultDTO(int index, boolean success, String message) {
+        this.index = index;
+        this.success = success;
+        this.message = message;
+    }
+}
@@ -0,0 +1,24 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import java.math.BigDecimal;
+
+import lombok.Value;
+
+/**
+ * For reading an amount aggregated per user (sum of ledger entries), without loading the users.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class UserAmountDTO {
+
+    private Long userId;
+    private BigDecimal amount;
+
+    public UserAmountDTO(Long userId, BigDecimal amount) {
+        this.userId = userId;
+        this.amount = amount;
+    }
+}
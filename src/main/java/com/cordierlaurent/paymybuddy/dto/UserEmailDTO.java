@@ -0,0 +1,22 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import lombok.Value;
+
+/**
+ * For reading the ID of a user from their email, without loading the user.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class UserEmailDTO {
+
+    private Long id;
+    private String email;
+
+    public UserEmailDTO(Long id, String email) {
+        this.id = id;
+        this.email = email;
+    }
+}
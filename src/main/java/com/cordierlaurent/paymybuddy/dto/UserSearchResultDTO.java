@@ -0,0 +1,25 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import lombok.Value;
+
+/**
+ * For displaying a user found by the typeahead search of the connection page.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class UserSearchResultDTO {
+
+    private Long id;
+    private String name;
+    // seulement si la recherche a trouvé l'utilisateur par son e-mail (déjà connu de celui qui cherche), null sinon.
+    private String email;
+
+    public UserSearchResultDTO(Long id, String name, String email) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+    }
+}
@@ -6,7 +6,7 @@ import java.sql.Timestamp;
 import lombok.Value;
 
 /**
- * For displaying the list of transactions for users.
+ * For displaying the list of transactions sent and received by users.
  * <p>
  * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
  * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
@@ -15,15 +15,21 @@ import lombok.Value;
 @Value
 public class UserTransactionDTO {
     
+    // pas affiché : sert de curseur pour la page suivante de l'historique.
+    private Long id;
     private Timestamp createdAt;
     private String friendName;
     private String description;
     private BigDecimal amount;
+    // sens du transfert : true si l'utilisateur est le bénéficiaire (friendName est alors l'émetteur).
+    private boolean received;
 
-    public UserTransactionDTO(Timestamp createdAt, String friendName, String description, BigDecimal amount) {
+    public UserTransactionDTO(Long id, Timestamp createdAt, String friendName, String description, BigDecimal amount, boolean received) {
+        this.id = id;
         this.createdAt = createdAt;
         this.friendName = friendName;
         this.description = description;
         this.amount = amount;
+        this.received = received;
     }
 }
@@ -0,0 +1,25 @@
+package com.cordierlaurent.paymybuddy.dto;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * For displaying one page of the transactions of a user, with the token of the next page.
+ * <p>
+ * @Value better than @Data for DTOs because it generates all fields final, meaning they cannot be changed after initialization.
+ * To avoid problems with modifying DTOs due to passing by reference in argument and function return.
+ * </p>
+ */
+@Value
+public class UserTransactionPageDTO {
+
+    private List<UserTransactionDTO> transactions;
+    // null s'il n'y a pas de page suivante.
+    private String nextCursor;
+
+    public UserTransactionPageDTO(List<UserTransactionDTO> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+}
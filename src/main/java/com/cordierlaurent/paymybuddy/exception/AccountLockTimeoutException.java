@@ -0,0 +1,12 @@
+package com.cordierlaurent.paymybuddy.exception;
+
+/**
+ * The lock of an account could not be acquired within the allowed time.
+ */
+public class AccountLockTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public AccountLockTimeoutException(String message) {
+        super(message);
+    }
+}
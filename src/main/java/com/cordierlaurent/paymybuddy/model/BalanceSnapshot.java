@@ -0,0 +1,51 @@
+package com.cordierlaurent.paymybuddy.model;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/*
+Snapshot du journal d'un utilisateur (mode paymybuddy.balance.mode=ledger), avancé périodiquement par LedgerCompactor :
+ledgerTotal = somme de toutes ses écritures créées jusqu'à entriesUntil inclus.
+La lecture du solde n'a donc plus à additionner que les écritures créées après entriesUntil.
+*/
+@Entity
+@Table(name = "balance_snapshots")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+// important pour afficher le contenu des objets simplement avec log4j2.
+@ToString
+public class BalanceSnapshot {
+
+    // un snapshot par utilisateur : la clé primaire est l'id de l'utilisateur (pas de génération).
+    @Id
+    private Long userId;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal ledgerTotal = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private Timestamp entriesUntil;
+
+    // verrou optimiste : deux compactages simultanés (plusieurs serveurs) ne peuvent pas ajouter deux fois les mêmes écritures.
+    @Version
+    private Long version;
+
+    // Constructeur utilisé pour créer le premier snapshot d'un utilisateur.
+    public BalanceSnapshot(Long userId) {
+        this.userId = userId;
+        this.ledgerTotal = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,76 @@
+package com.cordierlaurent.paymybuddy.model;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/*
+Ecriture du journal des mouvements (mode paymybuddy.balance.mode=ledger) : chaque transaction écrit une écriture de débit (montant négatif) pour l'émetteur
+et une écriture de crédit (montant positif) pour le bénéficiaire.
+Les écritures ne sont jamais modifiées ni supprimées (@Immutable => Hibernate ne génère jamais d'UPDATE) : le solde d'un utilisateur est
+users.balance + le total de son dernier BalanceSnapshot + la somme de ses écritures postérieures à ce snapshot.
+*/
+@Entity
+@Table(name = "ledger_entries")
+@Immutable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+// important pour afficher le contenu des objets simplement avec log4j2.
+@ToString
+public class LedgerEntry {
+
+    // Indique que id est la clé primaire.
+    @Id
+    // blocs d'id réservés dans id_generators comme pour les autres tables => les écritures partent en batch JDBC.
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "ledger_entries_id")
+    @TableGenerator(name = "ledger_entries_id", table = "id_generators", pkColumnName = "name", valueColumnName = "next_val", pkColumnValue = "ledger_entries", allocationSize = 50)
+    private Long id;
+
+    /*
+    la base de données gère le timestamp => indiqué dans le schema :
+    c'est lui (et non l'id, pris dans des blocs qui ne suivent pas l'ordre d'insertion entre plusieurs serveurs) qui sert de repère aux snapshots.
+    */
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Timestamp createdAt;
+
+    // LAZY : l'utilisateur et la transaction ne sont jamais relus depuis une écriture, seuls leurs id comptent.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @ToString.Exclude
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id", nullable = false)
+    @ToString.Exclude
+    private Transaction transaction;
+
+    // négatif pour un débit, positif pour un crédit.
+    @Column(nullable = false, precision = 8, scale = 2)
+    private BigDecimal amount;
+
+    // Constructeur utilisé pour créer une écriture sans ID ni date.
+    public LedgerEntry(User user, Transaction transaction, BigDecimal amount) {
+        this.user = user;
+        this.transaction = transaction;
+        this.amount = amount;
+    }
+}
@@ -11,6 +11,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -35,8 +36,13 @@ Non utilisation de @Data car génère equals() et hashCode(), ce qui peut être
 public class Transaction {
     // Indique que id est la clé primaire.
     @Id
-    // Indique que la valeur de la clé primaire est générée automatiquement par la base de données, en utilisant une auto-incrémentation.
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    /*
+    Les id ne sont plus générés par l'auto-incrémentation de la base (IDENTITY) car Hibernate doit alors faire chaque INSERT immédiatement pour connaître l'id => pas de batch possible.
+    A la place, Hibernate réserve les id par blocs de allocationSize dans la table id_generators (optimiseur "pooled") :
+    une seule requête sur id_generators pour 50 insertions, et les INSERT peuvent être regroupés en batch JDBC (voir hibernate.jdbc.batch_size).
+    */
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "transactions_id")
+    @TableGenerator(name = "transactions_id", table = "id_generators", pkColumnName = "name", valueColumnName = "next_val", pkColumnValue = "transactions", allocationSize = 50)
     private Long id;
 
     /*
@@ -74,4 +80,11 @@ public class Transaction {
 
     @Column(nullable = false, precision = 8, scale = 2)
     private BigDecimal amount = BigDecimal.ZERO;
+
+    /*
+    clé d'idempotence fournie par le client (champ caché du formulaire ou en-tête Idempotency-Key), facultative.
+    unique par émetteur (index sender_idempotency_key dans le schema) => un transfert soumis deux fois n'est enregistré qu'une seule fois.
+    */
+    @Column(length = 64)
+    private String idempotencyKey;
 }
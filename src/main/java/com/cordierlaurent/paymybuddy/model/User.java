@@ -9,6 +9,7 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -34,8 +35,13 @@ public class User {
     
     // Indique que id est la clé primaire.
     @Id
-    // Indique que la valeur de la clé primaire est générée automatiquement par la base de données, en utilisant une auto-incrémentation.
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    /*
+    Les id ne sont plus générés par l'auto-incrémentation de la base (IDENTITY) car Hibernate doit alors faire chaque INSERT immédiatement pour connaître l'id => pas de batch possible.
+    A la place, Hibernate réserve les id par blocs de allocationSize dans la table id_generators (optimiseur "pooled") :
+    une seule requête sur id_generators pour 50 insertions, et les INSERT peuvent être regroupés en batch JDBC (voir hibernate.jdbc.batch_size).
+    */
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "users_id")
+    @TableGenerator(name = "users_id", table = "id_generators", pkColumnName = "name", valueColumnName = "next_val", pkColumnValue = "users", allocationSize = 50)
     private Long id;
 
     /*
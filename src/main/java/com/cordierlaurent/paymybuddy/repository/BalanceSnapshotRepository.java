@@ -0,0 +1,12 @@
+package com.cordierlaurent.paymybuddy.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.cordierlaurent.paymybuddy.model.BalanceSnapshot;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+    /*
+    Méthodes utilisées déjà fournies par JpaRepository :    
+        findById(ID id), findAllById(Iterable<ID> ids), saveAll(Iterable<S> entities)
+    */
+}
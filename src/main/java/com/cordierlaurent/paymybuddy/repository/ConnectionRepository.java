@@ -1,9 +1,14 @@
 package com.cordierlaurent.paymybuddy.repository;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import com.cordierlaurent.paymybuddy.dto.ConnectionPairDTO;
+import com.cordierlaurent.paymybuddy.dto.FriendDTO;
 import com.cordierlaurent.paymybuddy.model.Connection;
 
 /*
@@ -20,7 +25,25 @@ public interface ConnectionRepository extends JpaRepository<Connection, Long> {
         deleteById(Long id);
     */
     // Spring Data génère automatiquement la requête : SELECT COUNT(*) FROM connections WHERE user_id = ? AND friend_id = ? et vérifie COUNT => false/true
+    // lecture de l'index unique user_friend_UNIQUE (user_id, friend_id) seul, sans accès à la table.
     boolean existsByUserIdAndFriendId(Long userId, Long friendId);
     // Spring Data génère automatiquement la requête : SELECT * FROM connections WHERE user_id =
     List<Connection> findByUserId(Long userId);
+    /*
+    Liste des amis pour la liste déroulante de la page de transfert, en une seule requête :
+        SELECT f.id, f.name FROM connections c JOIN users f ON f.id = c.friend_id WHERE c.user_id = ? ORDER BY f.name
+    SELECT new ... => seulement l'id et le nom, sans charger les Connection ni les User.
+    */
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.FriendDTO(f.id, f.name) FROM Connection c JOIN c.friend f WHERE c.user.id = :userId ORDER BY f.name")
+    List<FriendDTO> findFriends(Long userId);
+    // même requête limitée à une page (LIMIT) : les premiers amis par nom, pour compléter la liste des destinataires récents.
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.FriendDTO(f.id, f.name) FROM Connection c JOIN c.friend f WHERE c.user.id = :userId ORDER BY f.name")
+    List<FriendDTO> findFriends(Long userId, Pageable pageable);
+    /*
+    Toutes les connexions entre une liste d'utilisateurs et une liste d'amis en une seule requête (transferts groupés) :
+        SELECT user_id, friend_id FROM connections WHERE user_id IN (...) AND friend_id IN (...)
+    SELECT new ... => seulement les 2 id, sans charger les User.
+    */
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.ConnectionPairDTO(c.user.id, c.friend.id) FROM Connection c WHERE c.user.id IN :userIds AND c.friend.id IN :friendIds")
+    List<ConnectionPairDTO> findPairs(Collection<Long> userIds, Collection<Long> friendIds);
 }
@@ -0,0 +1,44 @@
+package com.cordierlaurent.paymybuddy.repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import com.cordierlaurent.paymybuddy.dto.UserAmountDTO;
+import com.cordierlaurent.paymybuddy.model.LedgerEntry;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+    /*
+    Méthodes utilisées déjà fournies par JpaRepository :    
+        saveAll(Iterable<S> entities)
+    */
+
+    /*
+    Somme des écritures d'un utilisateur créées après le snapshot (index user_created) :
+        SELECT COALESCE(SUM(amount), 0) FROM ledger_entries WHERE user_id = ? AND created_at > ?
+    */
+    @Query("SELECT COALESCE(SUM(e.amount), 0) FROM LedgerEntry e WHERE e.user.id = :userId AND e.createdAt > :after")
+    BigDecimal sumAmountByUserIdCreatedAfter(Long userId, Timestamp after);
+
+    /*
+    Somme par utilisateur des écritures postérieures à son snapshot (toutes si aucun snapshot), pour plusieurs utilisateurs en une requête.
+    */
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.UserAmountDTO(e.user.id, SUM(e.amount)) "
+         + "FROM LedgerEntry e LEFT JOIN BalanceSnapshot s ON s.userId = e.user.id "
+         + "WHERE e.user.id IN :userIds AND (s.userId IS NULL OR e.createdAt > s.entriesUntil) "
+         + "GROUP BY e.user.id")
+    List<UserAmountDTO> sumAmountSinceSnapshotByUserIds(Collection<Long> userIds);
+
+    /*
+    Pour le compactage : somme par utilisateur des écritures postérieures à son snapshot et créées jusqu'à until inclus.
+    */
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.UserAmountDTO(e.user.id, SUM(e.amount)) "
+         + "FROM LedgerEntry e LEFT JOIN BalanceSnapshot s ON s.userId = e.user.id "
+         + "WHERE e.createdAt <= :until AND (s.userId IS NULL OR e.createdAt > s.entriesUntil) "
+         + "GROUP BY e.user.id")
+    List<UserAmountDTO> sumAmountSinceSnapshotUntil(Timestamp until);
+}
@@ -1,12 +1,19 @@
 package com.cordierlaurent.paymybuddy.repository;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import com.cordierlaurent.paymybuddy.dto.IdempotentTransferDTO;
+import com.cordierlaurent.paymybuddy.dto.UserTransactionDTO;
 import com.cordierlaurent.paymybuddy.model.Transaction;
 
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+// TransactionRepositoryCustom : requêtes construites selon les filtres de la page d'administration.
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionRepositoryCustom {
     /*
     Méthodes utilisées déjà fournies par JpaRepository :    
         save(T entity)
@@ -19,11 +26,59 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
         SELECT * FROM transactions WHERE sender_id = ? ORDER BY created_at DESC
     */
     List<Transaction> findBySenderIdOrderByCreatedAtDesc(Long senderId);
+
     /*
-    Spring Data JPA va générer automatiquement => dérivation automatique des requêtes SQL à partir des noms de méthodes.
-        findAllBy => Sélectionne toutes les transactions (équivalent à findAll()
-        OrderByCreatedAtDesc => Trie les transactions par created_at en ordre décroissant.
-        SELECT * FROM transactions ORDER BY created_at DESC
-    */     
-    List<Transaction> findAllByOrderByCreatedAtDesc();
+    Pagination par clé (keyset) de l'historique d'un émetteur, du plus récent au plus ancien, sur l'index sender_created (sender_id, created_at, + id implicite) :
+        SELECT t.id, t.created_at, r.name, t.description, t.amount FROM transactions t JOIN users r ON r.id = t.receiver_id
+        WHERE t.sender_id = ? ORDER BY t.created_at DESC, t.id DESC LIMIT ?
+    Le Pageable ne sert qu'à la taille de la page (toujours la page 0) : pas d'OFFSET, pas de requête COUNT (retour List).
+    SELECT new => projection directe dans le DTO : une seule requête avec jointure, seules les colonnes affichées sont lues
+    (pas d'entités Transaction, ni de chargement des User émetteur/bénéficiaire avec leur mot de passe).
+    */
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.UserTransactionDTO(t.id, t.createdAt, r.name, t.description, t.amount, false) "
+         + "FROM Transaction t JOIN t.receiver r WHERE t.sender.id = :senderId ORDER BY t.createdAt DESC, t.id DESC")
+    List<UserTransactionDTO> findFirstPageBySenderId(Long senderId, Pageable pageable);
+
+    /*
+    Page suivante : les lignes strictement après le curseur (createdAt, id) dans l'ordre décroissant.
+    La condition redondante createdAt <= :createdAt permet à MySQL de faire un simple parcours de plage sur l'index.
+    */
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.UserTransactionDTO(t.id, t.createdAt, r.name, t.description, t.amount, false) "
+         + "FROM Transaction t JOIN t.receiver r WHERE t.sender.id = :senderId AND t.createdAt <= :createdAt "
+         + "AND (t.createdAt < :createdAt OR t.id < :id) ORDER BY t.createdAt DESC, t.id DESC")
+    List<UserTransactionDTO> findPageBySenderIdBefore(Long senderId, Timestamp createdAt, Long id, Pageable pageable);
+
+    /*
+    Mêmes pages pour les transactions reçues, sur l'index receiver_created (receiver_id, created_at, + id implicite) :
+    l'interlocuteur affiché est l'émetteur. Le fil d'activité fusionne ces pages avec celles des transactions envoyées (voir TransactionService),
+    au lieu d'une requête sender_id = ? OR receiver_id = ? qui ne peut pas suivre un index et trie toutes les lignes (filesort).
+    */
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.UserTransactionDTO(t.id, t.createdAt, s.name, t.description, t.amount, true) "
+         + "FROM Transaction t JOIN t.sender s WHERE t.receiver.id = :receiverId ORDER BY t.createdAt DESC, t.id DESC")
+    List<UserTransactionDTO> findFirstPageByReceiverId(Long receiverId, Pageable pageable);
+
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.UserTransactionDTO(t.id, t.createdAt, s.name, t.description, t.amount, true) "
+         + "FROM Transaction t JOIN t.sender s WHERE t.receiver.id = :receiverId AND t.createdAt <= :createdAt "
+         + "AND (t.createdAt < :createdAt OR t.id < :id) ORDER BY t.createdAt DESC, t.id DESC")
+    List<UserTransactionDTO> findPageByReceiverIdBefore(Long receiverId, Timestamp createdAt, Long id, Pageable pageable);
+
+    /*
+    Transactions trouvées par la recherche (voir TransactionSearchIndex), lues par clé primaire, du point de vue de l'utilisateur :
+    l'interlocuteur est le bénéficiaire si l'utilisateur est l'émetteur, l'émetteur sinon.
+    La condition sur l'utilisateur garantit qu'il ne voit que ses transactions, quels que soient les id demandés.
+    */
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.UserTransactionDTO(t.id, t.createdAt, "
+         + "CASE WHEN s.id = :userId THEN r.name ELSE s.name END, t.description, t.amount, "
+         + "CASE WHEN s.id = :userId THEN false ELSE true END) "
+         + "FROM Transaction t JOIN t.sender s JOIN t.receiver r "
+         + "WHERE t.id IN :ids AND (s.id = :userId OR r.id = :userId) ORDER BY t.createdAt DESC, t.id DESC")
+    List<UserTransactionDTO> findUserTransactionsByIds(Long userId, Collection<Long> ids);
+
+    /*
+    Bénéficiaire et montant du transfert déjà enregistré avec cette clé d'idempotence par cet émetteur (null si aucun).
+    Ils suffisent pour reconstruire le résultat du transfert initial et pour refuser un autre transfert qui réutiliserait la clé.
+    */
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.IdempotentTransferDTO(t.receiver.id, t.amount) "
+         + "FROM Transaction t WHERE t.sender.id = :senderId AND t.idempotencyKey = :idempotencyKey")
+    IdempotentTransferDTO findIdempotentTransfer(Long senderId, String idempotencyKey);
 }
@@ -0,0 +1,30 @@
+package com.cordierlaurent.paymybuddy.repository;
+
+import java.util.List;
+
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionDTO;
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionFilterDTO;
+
+/**
+ * Queries on the transactions whose conditions depend on the filters (implemented in TransactionRepositoryCustomImpl).
+ */
+public interface TransactionRepositoryCustom {
+
+    /**
+     * Finds one page of the transactions matching the filters, in the order of the filters.
+     *
+     * @param filter The filters and the sort (the page number is not used).
+     * @param offset The number of transactions skipped.
+     * @param limit  The maximum number of transactions returned.
+     * @return The transactions, projected into AdminTransactionDTOs.
+     */
+    List<AdminTransactionDTO> findAdminTransactions(AdminTransactionFilterDTO filter, int offset, int limit);
+
+    /**
+     * Counts the transactions matching the filters.
+     *
+     * @param filter The filters (the sort and the page number are not used).
+     * @return The number of transactions.
+     */
+    long countAdminTransactions(AdminTransactionFilterDTO filter);
+}
@@ -0,0 +1,92 @@
+package com.cordierlaurent.paymybuddy.repository;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionDTO;
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionFilterDTO;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+
+/*
+Implémentation de TransactionRepositoryCustom, trouvée par Spring Data grâce au suffixe Impl.
+La requête JPQL est construite avec les seuls filtres renseignés : une condition (:param IS NULL OR ...) par filtre empêcherait MySQL d'utiliser les index.
+Index utilisés selon les filtres (voir sql/pay_my_buddy.sql) :
+    émetteur => sender_created (sender_id, created_at), bénéficiaire => receiver_created (receiver_id, created_at),
+    dates seules => created (created_at), montants seuls => amount (amount).
+*/
+public class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AdminTransactionDTO> findAdminTransactions(AdminTransactionFilterDTO filter, int offset, int limit) {
+        Map<String, Object> parameters = new HashMap<>();
+        String where = buildWhere(filter, parameters);
+        // tri sur une liste fermée de colonnes (jamais de texte saisi dans la requête), id pour départager les égalités.
+        String column = AdminTransactionFilterDTO.SORT_AMOUNT.equals(filter.getSort()) ? "t.amount" : "t.createdAt";
+        String direction = filter.isAscending() ? " ASC" : " DESC";
+
+        TypedQuery<AdminTransactionDTO> query = entityManager.createQuery(
+                "SELECT new com.cordierlaurent.paymybuddy.dto.AdminTransactionDTO(t.createdAt, s.name, r.name, t.description, t.amount) "
+              + "FROM Transaction t JOIN t.sender s JOIN t.receiver r" + where
+              + " ORDER BY " + column + direction + ", t.id" + direction, AdminTransactionDTO.class);
+        parameters.forEach(query::setParameter);
+        return query.setFirstResult(offset).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public long countAdminTransactions(AdminTransactionFilterDTO filter) {
+        Map<String, Object> parameters = new HashMap<>();
+        String where = buildWhere(filter, parameters);
+        // les jointures sur users ne servent qu'aux filtres par email.
+        String from = "FROM Transaction t"
+                + (isSet(filter.getSenderEmail()) ? " JOIN t.sender s" : "")
+                + (isSet(filter.getReceiverEmail()) ? " JOIN t.receiver r" : "");
+
+        Query query = entityManager.createQuery("SELECT COUNT(t) " + from + where);
+        parameters.forEach(query::setParameter);
+        return (Long) query.getSingleResult();
+    }
+
+    private static boolean isSet(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    // conditions des filtres renseignés, les valeurs sont toujours passées en paramètres.
+    private static String buildWhere(AdminTransactionFilterDTO filter, Map<String, Object> parameters) {
+        StringBuilder where = new StringBuilder();
+        if (isSet(filter.getSenderEmail())) {
+            where.append(" AND s.email = :senderEmail");
+            parameters.put("senderEmail", filter.getSenderEmail().trim());
+        }
+        if (isSet(filter.getReceiverEmail())) {
+            where.append(" AND r.email = :receiverEmail");
+            parameters.put("receiverEmail", filter.getReceiverEmail().trim());
+        }
+        if (filter.getMinAmount() != null) {
+            where.append(" AND t.amount >= :minAmount");
+            parameters.put("minAmount", filter.getMinAmount());
+        }
+        if (filter.getMaxAmount() != null) {
+            where.append(" AND t.amount <= :maxAmount");
+            parameters.put("maxAmount", filter.getMaxAmount());
+        }
+        if (filter.getFrom() != null) {
+            where.append(" AND t.createdAt >= :from");
+            parameters.put("from", Timestamp.valueOf(filter.getFrom().atStartOfDay()));
+        }
+        if (filter.getTo() != null) {
+            where.append(" AND t.createdAt < :to");
+            parameters.put("to", Timestamp.valueOf(filter.getTo().plusDays(1).atStartOfDay()));
+        }
+        // " AND " initial remplacé par " WHERE ".
+        return where.length() == 0 ? "" : " WHERE" + where.substring(4);
+    }
+}
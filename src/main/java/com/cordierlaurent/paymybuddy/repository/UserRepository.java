@@ -1,12 +1,20 @@
 package com.cordierlaurent.paymybuddy.repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import com.cordierlaurent.paymybuddy.dto.UserEmailDTO;
 import com.cordierlaurent.paymybuddy.model.User;
 
+import jakarta.persistence.LockModeType;
+
 /*
 Pas besoin de @Repository sur une interface JpaRepository
 Spring le détecte automatiquement et crée un bean sans configuration supplémentaire.
@@ -19,4 +27,46 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     // Spring Data génère automatiquement la requête : SELECT * FROM users WHERE role = ?
     List<User> findByRole(String role);
+
+    /*
+    Utilisateurs existants parmi une liste d'emails en une seule requête (import de relations) :
+        SELECT id, email FROM users WHERE email IN (...)
+    SELECT new ... => seulement l'id et l'email, sans charger les User.
+    */
+    @Query("SELECT new com.cordierlaurent.paymybuddy.dto.UserEmailDTO(u.id, u.email) FROM User u WHERE u.email IN :emails")
+    List<UserEmailDTO> findIdsByEmails(Collection<String> emails);
+
+    // SELECT balance FROM users WHERE id = ? => évite de charger tout l'utilisateur pour relire le solde.
+    @Query("SELECT u.balance FROM User u WHERE u.id = :id")
+    BigDecimal findBalanceById(Long id);
+
+    /*
+    Débit conditionnel en une seule requête SQL :
+        UPDATE users SET balance = balance - ? WHERE id = ? AND balance >= ?
+    Le contrôle du solde et la mise à jour sont atomiques côté base (verrou de ligne InnoDB) => deux transferts simultanés ne peuvent plus mettre le compte à découvert.
+    Retourne le nombre de lignes modifiées : 1 si le débit a été fait, 0 si le solde est insuffisant.
+    @Modifying obligatoire pour une requête UPDATE, et elle doit être exécutée dans une transaction.
+    */
+    @Modifying
+    @Query("UPDATE User u SET u.balance = u.balance - :amount WHERE u.id = :id AND u.balance >= :amount")
+    int debitIfSufficient(Long id, BigDecimal amount);
+
+    /*
+    Crédit en une seule requête SQL (pas de lecture/écriture en Java) :
+        UPDATE users SET balance = balance + ? WHERE id = ?
+    Retourne le nombre de lignes modifiées : 1 si le crédit a été fait, 0 si l'utilisateur n'existe pas.
+    */
+    @Modifying
+    @Query("UPDATE User u SET u.balance = u.balance + :amount WHERE u.id = :id")
+    int credit(Long id, BigDecimal amount);
+
+    /*
+    Verrouille et charge plusieurs utilisateurs en une seule requête :
+        SELECT * FROM users WHERE id IN (...) ORDER BY id FOR UPDATE
+    Les lignes sont verrouillées dans l'ordre croissant des id => deux traitements groupés ne peuvent pas s'interbloquer.
+    Doit être exécutée dans une transaction (les verrous sont rendus au commit).
+    */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id IN :ids ORDER BY u.id")
+    List<User> findAllByIdForUpdate(Collection<Long> ids);
 }
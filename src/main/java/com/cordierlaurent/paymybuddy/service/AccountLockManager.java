@@ -0,0 +1,158 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.cordierlaurent.paymybuddy.exception.AccountLockTimeoutException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * In-process lock manager serializing the operations on the same accounts.
+ * <p>
+ * The locks are a fixed array of stripes: a user ID is hashed to one stripe, so the memory used does not grow with the number of accounts.
+ * The stripes are always acquired in ascending order, so two transfers A→B and B→A cannot deadlock, and each wait is bounded by a timeout.
+ * Acquisitions, contentions, timeouts and waiting time are published per stripe as Micrometer metrics (paymybuddy.lock.*, tag "stripe").
+ * </p>
+ * <p>
+ * These locks only protect the current JVM: the database remains the reference with the conditional debit.
+ * </p>
+ */
+@Service
+@Log4j2
+public class AccountLockManager {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // permet de désactiver le verrouillage en mémoire (la base reste protégée par le débit conditionnel).
+    @Value("${paymybuddy.transfer.lock.enabled:true}")
+    private boolean enabled;
+
+    // nombre de verrous, arrondi à la puissance de 2 supérieure pour calculer l'index avec un simple masque.
+    @Value("${paymybuddy.transfer.lock.stripes:64}")
+    private int stripeCount;
+
+    // attente maximum (en ms) pour obtenir tous les verrous d'une opération.
+    @Value("${paymybuddy.transfer.lock.timeout-ms:500}")
+    private long timeoutMs;
+
+    private ReentrantLock[] stripes;
+    
+    // compteurs par verrou (tableaux atomiques => pas d'objet par compteur).
+    private AtomicLongArray acquisitions;
+    private AtomicLongArray contentions;
+    private AtomicLongArray timeouts;
+    private AtomicLongArray waitNanos;
+
+    @PostConstruct
+    void init() {
+        int size = 1;
+        while (size < stripeCount) {
+            size <<= 1;
+        }
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        acquisitions = new AtomicLongArray(size);
+        contentions = new AtomicLongArray(size);
+        timeouts = new AtomicLongArray(size);
+        waitNanos = new AtomicLongArray(size);
+
+        for (int i = 0; i < size; i++) {
+            final int stripe = i;
+            String tag = String.valueOf(stripe);
+            FunctionCounter.builder("paymybuddy.lock.acquisitions", acquisitions, counters -> counters.get(stripe))
+                .tag("stripe", tag).description("Locks acquired").register(meterRegistry);
+            FunctionCounter.builder("paymybuddy.lock.contentions", contentions, counters -> counters.get(stripe))
+                .tag("stripe", tag).description("Locks already held by another thread when requested").register(meterRegistry);
+            FunctionCounter.builder("paymybuddy.lock.timeouts", timeouts, counters -> counters.get(stripe))
+                .tag("stripe", tag).description("Locks not acquired within the timeout").register(meterRegistry);
+            FunctionCounter.builder("paymybuddy.lock.wait", waitNanos, counters -> counters.get(stripe) / 1_000_000.0)
+                .tag("stripe", tag).baseUnit("milliseconds").description("Time spent waiting for locks").register(meterRegistry);
+        }
+        log.info("AccountLockManager,enabled="+enabled+",stripes="+size+",timeoutMs="+timeoutMs);
+    }
+
+    /**
+     * Returns the index of the stripe protecting a user.
+     *
+     * @param userId The user ID.
+     * @return The index of the stripe.
+     */
+    int stripeOf(Long userId) {
+        int hash = Long.hashCode(userId);
+        // mélange des bits de poids fort dans les bits de poids faible (les id sont séquentiels).
+        hash ^= (hash >>> 16);
+        return hash & (stripes.length - 1);
+    }
+
+    /**
+     * Executes a unit of work while holding the locks of the given users.
+     *
+     * @param <T>     The type of the result.
+     * @param work    The unit of work to execute.
+     * @param userIds The IDs of the users whose accounts are modified.
+     * @return The result of the unit of work.
+     * @throws AccountLockTimeoutException If the locks could not be acquired within the timeout.
+     */
+    public <T> T executeLocked(Supplier<T> work, Long... userIds) {
+        if (!enabled) {
+            return work.get();
+        }
+        
+        // ordre croissant + dédoublonnage (deux comptes peuvent partager le même verrou) => pas d'interblocage possible.
+        int[] indexes = Arrays.stream(userIds).mapToInt(this::stripeOf).sorted().distinct().toArray();
+        int locked = 0;
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            for (int index : indexes) {
+                if (!acquire(index, deadline)) {
+                    throw new AccountLockTimeoutException("Lock timeout : userIds="+Arrays.toString(userIds)+",stripe="+index);
+                }
+                locked++;
+            }
+            return work.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountLockTimeoutException("Lock interrupted : userIds="+Arrays.toString(userIds));
+        } finally {
+            // libération dans l'ordre inverse de l'acquisition.
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[indexes[i]].unlock();
+            }
+        }
+    }
+    
+    // tente d'obtenir un verrou avant l'échéance en mettant à jour les compteurs du verrou.
+    private boolean acquire(int index, long deadline) throws InterruptedException {
+        ReentrantLock lock = stripes[index];
+        if (lock.tryLock()) {
+            acquisitions.incrementAndGet(index);
+            return true;
+        }
+        contentions.incrementAndGet(index);
+        long start = System.nanoTime();
+        boolean acquired = lock.tryLock(deadline - start, TimeUnit.NANOSECONDS);
+        waitNanos.addAndGet(index, System.nanoTime() - start);
+        if (acquired) {
+            acquisitions.incrementAndGet(index);
+        } else {
+            timeouts.incrementAndGet(index);
+            log.warn("acquire,timeout,stripe="+index);
+        }
+        return acquired;
+    }
+
+}
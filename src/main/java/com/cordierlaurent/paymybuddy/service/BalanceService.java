@@ -0,0 +1,48 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.model.User;
+
+/**
+ * Service holding the balances of the users.
+ * <p>
+ * This interface defines how money is moved by a transfer and how balances are read, whatever the storage of the balances
+ * (paymybuddy.balance.mode: the users.balance column, or an append-only ledger).
+ * </p>
+ */
+public interface BalanceService {
+
+    /**
+     * Retrieves the current balance of a user.
+     *
+     * @param userId The ID of the user.
+     * @return The current balance.
+     * @throws com.cordierlaurent.paymybuddy.exception.UserNotFoundException If the user does not exist.
+     */
+    BigDecimal getBalance(Long userId);
+
+    /**
+     * Retrieves the current balances of users already locked and loaded by the caller.
+     *
+     * @param users The users, loaded in the current database transaction.
+     * @return The current balance of each user, by ID.
+     */
+    Map<Long, BigDecimal> getBalances(Collection<User> users);
+
+    /**
+     * Moves the money of a transfer and saves the transaction, if the sender's balance is sufficient.
+     * <p>
+     * Must be called inside a database transaction: the transaction is saved only if the money has been moved.
+     * </p>
+     *
+     * @param transaction The transaction to apply, not yet saved (sender, receiver and amount set).
+     * @return true if the transfer has been made, false if the sender's balance is insufficient.
+     * @throws com.cordierlaurent.paymybuddy.exception.TransactionException If the receiver could not be credited.
+     */
+    boolean transfer(Transaction transaction);
+
+}
@@ -0,0 +1,246 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.cordierlaurent.paymybuddy.dto.ConnectionPairDTO;
+import com.cordierlaurent.paymybuddy.dto.TransferItemRequestDTO;
+import com.cordierlaurent.paymybuddy.dto.TransferItemResultDTO;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.repository.ConnectionRepository;
+import com.cordierlaurent.paymybuddy.repository.TransactionRepository;
+import com.cordierlaurent.paymybuddy.repository.UserRepository;
+import com.cordierlaurent.paymybuddy.util.Result;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Service applying a batch of transfers (payroll-style payouts) in a single database transaction.
+ * <p>
+ * Instead of several round trips per transfer, the whole batch costs a fixed number of statements:
+ * one query locking all the accounts involved, one query for the connections, batched inserts of the transactions
+ * (hibernate.jdbc.batch_size rows per statement) and one JDBC batch updating the balances, grouped by account.
+ * Each transfer is accepted or refused on its own: a refused transfer does not cancel the others.
+ * </p>
+ */
+@Service
+@Log4j2
+public class BatchTransferService {
+
+    // requête du batch JDBC des soldes.
+    private static final String UPDATE_BALANCE = "UPDATE users SET balance = balance + ? WHERE id = ?";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ConnectionRepository connectionRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    // fourni par Spring Boot, il participe à la transaction JPA en cours.
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionExecutor transactionExecutor;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private TransactionSearchIndex transactionSearchIndex;
+
+    @Autowired
+    private MonthlyRollupService monthlyRollupService;
+
+    @Autowired
+    private UserHistoryCache userHistoryCache;
+
+    @Autowired
+    private RecentRecipientsService recentRecipientsService;
+
+    // nombre maximum de transferts acceptés dans un même lot.
+    @Value("${paymybuddy.transfer.batch.max-size:5000}")
+    private int maxSize;
+
+    /**
+     * Returns the maximum number of transfers accepted in one batch.
+     *
+     * @return The maximum size of a batch.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Applies a batch of transfers in a single database transaction.
+     * <p>
+     * The transfers are applied in the order of the list: a sender credited by an earlier transfer of the batch can spend that money in a later one.
+     * If the database reports a deadlock or a lock timeout, the whole batch is retried.
+     * </p>
+     *
+     * @param transfers The transfers to apply.
+     * @return The outcome of each transfer, in the order of the request.
+     * @throws IllegalArgumentException If the list is null or larger than the maximum size.
+     */
+    // Pas de verrous en mémoire (AccountLockManager) ici : un lot peut durer bien plus longtemps que leur timeout, ce sont les verrous de la base qui protègent les soldes.
+    public List<TransferItemResultDTO> addTransactions(List<TransferItemRequestDTO> transfers) {
+        log.debug("addTransactions,size="+(transfers == null ? null : transfers.size()));
+
+        if (transfers == null) {
+            throw new IllegalArgumentException("Transfers must not be null");
+        }
+        if (transfers.size() > maxSize) {
+            throw new IllegalArgumentException("Too many transfers : "+transfers.size()+" > "+maxSize);
+        }
+        if (transfers.isEmpty()) {
+            return List.of();
+        }
+
+        return transactionExecutor.executeWithRetry(() -> applyBatch(transfers));
+    }
+
+    /**
+     * Checks and applies the batch inside the current database transaction.
+     *
+     * @param transfers The transfers to apply.
+     * @return The outcome of each transfer, in the order of the request.
+     */
+    private List<TransferItemResultDTO> applyBatch(List<TransferItemRequestDTO> transfers) {
+        Result[] results = new Result[transfers.size()];
+
+        // contrôles sans accès à la base.
+        Set<Long> userIds = new TreeSet<>();
+        Set<Long> senderIds = new HashSet<>();
+        Set<Long> receiverIds = new HashSet<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferItemRequestDTO transfer = transfers.get(i);
+            String error = checkTransfer(transfer);
+            if (error != null) {
+                results[i] = new Result(false, error);
+                continue;
+            }
+            senderIds.add(transfer.getSenderId());
+            receiverIds.add(transfer.getReceiverId());
+            userIds.add(transfer.getSenderId());
+            userIds.add(transfer.getReceiverId());
+        }
+
+        // 1 requête : verrouillage de tous les comptes concernés (ordre croissant des id), puis lecture des soldes (+ le journal en mode ledger).
+        Map<Long, User> users = new HashMap<>();
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            for (User user : userRepository.findAllByIdForUpdate(userIds)) {
+                users.put(user.getId(), user);
+            }
+            balances = balanceService.getBalances(users.values());
+        }
+        // 1 requête : toutes les connexions utiles.
+        Set<ConnectionPairDTO> connections = senderIds.isEmpty()
+                ? Set.of()
+                : new HashSet<>(connectionRepository.findPairs(senderIds, receiverIds));
+
+        // simulation dans l'ordre de la requête avec les soldes en mémoire.
+        List<Transaction> accepted = new ArrayList<>();
+        // TreeMap => les UPDATE sont envoyés dans l'ordre croissant des id, comme les verrous.
+        Map<Long, BigDecimal> deltas = new TreeMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            TransferItemRequestDTO transfer = transfers.get(i);
+            Long senderId = transfer.getSenderId();
+            Long receiverId = transfer.getReceiverId();
+            BigDecimal amount = transfer.getAmount();
+
+            if (!balances.containsKey(senderId)) {
+                results[i] = new Result(false, "L'émetteur " + senderId + " n'existe pas");
+            } else if (!balances.containsKey(receiverId)) {
+                results[i] = new Result(false, "Le bénéficiaire " + receiverId + " n'existe pas");
+            } else if (!connections.contains(new ConnectionPairDTO(senderId, receiverId))) {
+                results[i] = new Result(false, "Le bénéficiaire " + receiverId + " n'est pas une relation de " + senderId);
+            } else if (balances.get(senderId).compareTo(amount) < 0) {
+                results[i] = new Result(false, "Le solde de " + balances.get(senderId) + " € est insufisant");
+            } else {
+                balances.put(senderId, balances.get(senderId).subtract(amount));
+                balances.put(receiverId, balances.get(receiverId).add(amount));
+                deltas.merge(senderId, amount.negate(), BigDecimal::add);
+                deltas.merge(receiverId, amount, BigDecimal::add);
+                Transaction transaction = new Transaction();
+                transaction.setSender(users.get(senderId));
+                transaction.setReceiver(users.get(receiverId));
+                transaction.setDescription(transfer.getDescription());
+                transaction.setAmount(amount);
+                accepted.add(transaction);
+                results[i] = new Result(true, "La transaction de " + amount + " € a été effectuée");
+            }
+        }
+
+        // insertion de toutes les transactions acceptées : les id sont pris dans les blocs réservés et les INSERT partent en batch au flush.
+        transactionRepository.saveAll(accepted);
+        accepted.forEach(transactionSearchIndex::indexAfterCommit);
+        accepted.forEach(userHistoryCache::invalidateAfterCommit);
+        accepted.forEach(recentRecipientsService::recordAfterCommit);
+        // flush explicite : JdbcTemplate ne déclenche pas le flush de Hibernate, les INSERT partent ici avant les mises à jour des soldes.
+        transactionRepository.flush();
+        // totaux mensuels : une seule requête pour tout le lot.
+        monthlyRollupService.addTransactions(accepted);
+        // 1 batch JDBC : une seule mise à jour par compte avec la somme de ses mouvements (les comptes à 0 sont ignorés).
+        // en mode ledger aussi : la colonne fait partie du solde (colonne + journal).
+        List<Map.Entry<Long, BigDecimal>> changes = new ArrayList<>();
+        for (Map.Entry<Long, BigDecimal> delta : deltas.entrySet()) {
+            if (delta.getValue().signum() != 0) {
+                changes.add(delta);
+            }
+        }
+        jdbcTemplate.batchUpdate(UPDATE_BALANCE, changes, changes.size(), (ps, change) -> {
+            ps.setBigDecimal(1, change.getValue());
+            ps.setLong(2, change.getKey());
+        });
+        log.info("applyBatch,transfers="+transfers.size()+",accepted="+accepted.size()+",accounts="+changes.size());
+
+        List<TransferItemResultDTO> transferResults = new ArrayList<>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            transferResults.add(new TransferItemResultDTO(i, results[i].isSuccess(), results[i].getMessage()));
+        }
+        return transferResults;
+    }
+
+    /**
+     * Checks a transfer without accessing the database.
+     *
+     * @param transfer The transfer to check.
+     * @return The error message, or null if the transfer is valid.
+     */
+    private String checkTransfer(TransferItemRequestDTO transfer) {
+        if (transfer == null || transfer.getSenderId() == null || transfer.getReceiverId() == null) {
+            return "Sender and receiver must not be null";
+        }
+        if (transfer.getDescription() == null || transfer.getDescription().trim().isEmpty()) {
+            return "Description cannot be empty";
+        }
+        if (transfer.getAmount() == null || transfer.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return "Amount must be greater than zero";
+        }
+        if (transfer.getSenderId().equals(transfer.getReceiverId())) {
+            return "Sender and receiver must be different";
+        }
+        return null;
+    }
+
+}
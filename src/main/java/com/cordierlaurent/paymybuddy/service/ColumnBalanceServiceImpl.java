@@ -0,0 +1,81 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.cordierlaurent.paymybuddy.exception.TransactionException;
+import com.cordierlaurent.paymybuddy.exception.UserNotFoundException;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.repository.TransactionRepository;
+import com.cordierlaurent.paymybuddy.repository.UserRepository;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Balances stored in the users.balance column, updated in place by each transfer (default mode).
+ * <p>
+ * The sender is debited with a single conditional SQL update (only if the balance is sufficient) and the receiver is credited with a single SQL update.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "paymybuddy.balance.mode", havingValue = "column", matchIfMissing = true)
+@Log4j2
+public class ColumnBalanceServiceImpl implements BalanceService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Override
+    public BigDecimal getBalance(Long userId) {
+        BigDecimal balance = userRepository.findBalanceById(userId);
+        if (balance == null) {
+            throw new UserNotFoundException("Internal error : getBalance : "+userId);
+        }
+        return balance;
+    }
+
+    @Override
+    public Map<Long, BigDecimal> getBalances(Collection<User> users) {
+        // les utilisateurs viennent d'être chargés (et verrouillés) : leur colonne balance est à jour.
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (User user : users) {
+            balances.put(user.getId(), user.getBalance());
+        }
+        return balances;
+    }
+
+    @Override
+    public boolean transfer(Transaction transaction) {
+        Long senderId = transaction.getSender().getId();
+        Long receiverId = transaction.getReceiver().getId();
+
+        // débit conditionnel : le contrôle du solde est fait par la base dans la même requête.
+        int debitedRows = userRepository.debitIfSufficient(senderId, transaction.getAmount());
+        log.debug("transfer,debit,senderId="+senderId+",rowsAffected="+debitedRows);
+        if (debitedRows == 0) {
+            return false;
+        }
+
+        // sauvegarde de la transaction.
+        transactionRepository.save(transaction);
+
+        int creditedRows = userRepository.credit(receiverId, transaction.getAmount());
+        log.debug("transfer,credit,receiverId="+receiverId+",rowsAffected="+creditedRows);
+        // exception => rollback du débit et de la transaction.
+        if (creditedRows != 1) {
+            throw new TransactionException("Internal error : transfer : credit error : "+receiverId);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,518 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * In-memory graph of the connections, for suggesting friends of friends ("people you may know").
+ * <p>
+ * The connections are stored in compressed sparse row form: a sorted array of the user IDs (one node per user), and for each node
+ * the range of its friends in a single array of node indices. An edge costs one int, instead of a Connection and its two users.
+ * The graph is loaded from the database at startup. The connections committed afterwards are kept in a small map of pending edges
+ * per user, merged into a new compact graph every paymybuddy.suggestions.compaction-threshold edges.
+ * Readers never lock: they read an immutable graph and its pending edges, replaced together by the writers.
+ * The same graph answers whether two users are connected, without a database round trip on the transfer path.
+ * </p>
+ */
+@Service
+@Log4j2
+public class ConnectionGraph {
+
+    private static final long[] NO_FRIENDS = new long[0];
+
+    /**
+     * A suggested user and the number of friends they have in common with the user.
+     *
+     * @param userId The ID of the suggested user.
+     * @param mutualFriends The number of friends of the user who have the suggested user as a friend.
+     */
+    public record Suggestion(long userId, int mutualFriends) {
+    }
+
+    // graphe compact immuable : les amis du nœud i sont les nœuds targets[offsets[i]] à targets[offsets[i + 1] - 1], triés.
+    static final class Csr {
+
+        // nœud => id de l'utilisateur, trié : l'ordre des nœuds est celui des id.
+        private final long[] userIds;
+
+        private final int[] offsets;
+
+        private final int[] targets;
+
+        private Csr(long[] userIds, int[] offsets, int[] targets) {
+            this.userIds = userIds;
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        /*
+        Construction à partir de la liste des arcs (émetteur, ami) : les id sont numérotés par ordre croissant,
+        puis les arcs sont rangés par nœud (tri par comptage), et les doublons sont supprimés.
+        */
+        static Csr build(long[] sources, long[] friends, int count) {
+            long[] ids = new long[count * 2];
+            System.arraycopy(sources, 0, ids, 0, count);
+            System.arraycopy(friends, 0, ids, count, count);
+            Arrays.sort(ids);
+            int nodes = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (i == 0 || ids[i] != ids[i - 1]) {
+                    ids[nodes++] = ids[i];
+                }
+            }
+            long[] userIds = Arrays.copyOf(ids, nodes);
+
+            int[] degrees = new int[nodes + 1];
+            int[] sourceNodes = new int[count];
+            for (int i = 0; i < count; i++) {
+                sourceNodes[i] = Arrays.binarySearch(userIds, sources[i]);
+                degrees[sourceNodes[i] + 1]++;
+            }
+            for (int node = 0; node < nodes; node++) {
+                degrees[node + 1] += degrees[node];
+            }
+            int[] next = Arrays.copyOf(degrees, nodes);
+            int[] targets = new int[count];
+            for (int i = 0; i < count; i++) {
+                targets[next[sourceNodes[i]]++] = Arrays.binarySearch(userIds, friends[i]);
+            }
+
+            // tri de chaque liste d'amis et suppression des doublons (arc chargé et aussi reçu pendant le chargement).
+            int[] offsets = new int[nodes + 1];
+            int size = 0;
+            for (int node = 0; node < nodes; node++) {
+                Arrays.sort(targets, degrees[node], degrees[node + 1]);
+                offsets[node] = size;
+                for (int k = degrees[node]; k < degrees[node + 1]; k++) {
+                    if (k == degrees[node] || targets[k] != targets[k - 1]) {
+                        targets[size++] = targets[k];
+                    }
+                }
+            }
+            offsets[nodes] = size;
+            return new Csr(userIds, offsets, size == count ? targets : Arrays.copyOf(targets, size));
+        }
+
+        static Csr empty() {
+            return new Csr(new long[0], new int[1], new int[0]);
+        }
+
+        int edges() {
+            return targets.length;
+        }
+
+        // mémoire des tableaux (sans les en-têtes d'objet).
+        long bytes() {
+            return 8L * userIds.length + 4L * offsets.length + 4L * targets.length;
+        }
+    }
+
+    // graphe compact + arcs reçus depuis sa construction (id utilisateur => id des nouveaux amis, triés, tableau remplacé à chaque ajout).
+    private record State(Csr csr, Map<Long, long[]> pending) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // nombre d'arcs en attente au-delà duquel ils sont fusionnés dans un nouveau graphe compact.
+    @Value("${paymybuddy.suggestions.compaction-threshold:10000}")
+    private int compactionThreshold;
+
+    private volatile State state = new State(Csr.empty(), new ConcurrentHashMap<>());
+
+    // écritures (ajouts, fusion, chargement) : une à la fois. Les lectures ne prennent pas le verrou.
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // protégés par writeLock.
+    private int pendingEdges;
+
+    // arcs reçus pendant le chargement depuis la base, rejoués dans le graphe chargé (null en dehors d'un chargement).
+    private List<long[]> replay;
+
+    private volatile boolean ready;
+
+    private final Queue<Counters> counterPool = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("paymybuddy.suggestions.graph.edges", this, graph -> graph.state.csr().edges())
+                .description("Connections in the compact graph").register(meterRegistry);
+        Gauge.builder("paymybuddy.suggestions.graph.bytes", this, graph -> graph.state.csr().bytes())
+                .baseUnit("bytes").description("Memory of the arrays of the compact graph").register(meterRegistry);
+    }
+
+    /**
+     * Indicates whether the graph has been loaded and can answer queries.
+     *
+     * @return True once the load at startup is finished.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Loads the graph from all the connections of the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        writeLock.lock();
+        try {
+            replay = new ArrayList<>();
+        } finally {
+            writeLock.unlock();
+        }
+
+        // chargement sans verrou : les connexions validées pendant ce temps sont gardées dans replay.
+        long[][] edges = {new long[1024], new long[1024]};
+        int[] count = {0};
+        jdbcTemplate.query("SELECT user_id, friend_id FROM connections", rs -> {
+            if (count[0] == edges[0].length) {
+                edges[0] = Arrays.copyOf(edges[0], count[0] * 2);
+                edges[1] = Arrays.copyOf(edges[1], count[0] * 2);
+            }
+            edges[0][count[0]] = rs.getLong(1);
+            edges[1][count[0]] = rs.getLong(2);
+            count[0]++;
+        });
+
+        writeLock.lock();
+        try {
+            long[] sources = Arrays.copyOf(edges[0], count[0] + replay.size());
+            long[] friends = Arrays.copyOf(edges[1], count[0] + replay.size());
+            for (long[] edge : replay) {
+                sources[count[0]] = edge[0];
+                friends[count[0]++] = edge[1];
+            }
+            replay = null;
+            publish(Csr.build(sources, friends, count[0]));
+        } finally {
+            writeLock.unlock();
+        }
+        ready = true;
+        Csr csr = state.csr();
+        log.info("rebuild,users="+csr.userIds.length+",edges="+csr.edges()+",bytes="+csr.bytes()
+                +",bytesPerEdge="+String.format(Locale.ROOT, "%.1f", csr.edges() == 0 ? 0.0 : (double) csr.bytes() / csr.edges())+",ms="+(System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Adds a connection to the graph once the database transaction saving it is committed (immediately outside a database transaction).
+     *
+     * @param userId The user who added the connection.
+     * @param friendId The friend added.
+     */
+    public void addAfterCommit(long userId, long friendId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(userId, friendId);
+                }
+            });
+        } else {
+            add(userId, friendId);
+        }
+    }
+
+    void add(long userId, long friendId) {
+        writeLock.lock();
+        try {
+            // copie du tableau : un lecteur peut être en train de parcourir l'ancien.
+            state.pending().compute(userId, (key, friendIds) -> insert(friendIds == null ? NO_FRIENDS : friendIds, friendId));
+            pendingEdges++;
+            if (replay != null) {
+                replay.add(new long[] {userId, friendId});
+            } else if (pendingEdges >= compactionThreshold) {
+                compact();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // fusion des arcs en attente dans un nouveau graphe compact (appelée avec writeLock).
+    private void compact() {
+        long start = System.nanoTime();
+        State current = state;
+        Csr csr = current.csr();
+        int count = csr.edges() + pendingEdges;
+        long[] sources = new long[count];
+        long[] friends = new long[count];
+        int i = 0;
+        for (int node = 0; node < csr.userIds.length; node++) {
+            for (int k = csr.offsets[node]; k < csr.offsets[node + 1]; k++) {
+                sources[i] = csr.userIds[node];
+                friends[i++] = csr.userIds[csr.targets[k]];
+            }
+        }
+        for (Map.Entry<Long, long[]> entry : current.pending().entrySet()) {
+            for (long friendId : entry.getValue()) {
+                sources[i] = entry.getKey();
+                friends[i++] = friendId;
+            }
+        }
+        publish(Csr.build(sources, friends, i));
+        log.info("compact,edges="+state.csr().edges()+",ms="+(System.nanoTime() - start) / 1_000_000);
+    }
+
+    // un seul changement de state : les lecteurs voient l'ancien graphe avec ses arcs en attente, ou le nouveau sans arc en attente.
+    private void publish(Csr csr) {
+        state = new State(csr, new ConcurrentHashMap<>());
+        pendingEdges = 0;
+    }
+
+    /**
+     * Indicates whether a user has added another user as a friend, from memory.
+     * <p>
+     * A positive answer is reliable (connections are never deleted). A negative answer may come from a graph still loading,
+     * or from a connection saved outside the application: the caller then checks the database.
+     * </p>
+     *
+     * @param userId The user ID.
+     * @param friendId The friend ID.
+     * @return True if the connection is in the graph, false if it is not or if the graph is not loaded yet.
+     */
+    public boolean contains(long userId, long friendId) {
+        if (!ready) {
+            return false;
+        }
+        State current = state;
+        Csr csr = current.csr();
+        int userNode = Arrays.binarySearch(csr.userIds, userId);
+        int friendNode = Arrays.binarySearch(csr.userIds, friendId);
+        // les amis d'un nœud sont triés : recherche par dichotomie dans sa plage.
+        if (userNode >= 0 && friendNode >= 0
+                && Arrays.binarySearch(csr.targets, csr.offsets[userNode], csr.offsets[userNode + 1], friendNode) >= 0) {
+            return true;
+        }
+        long[] pendingFriends = current.pending().get(userId);
+        return pendingFriends != null && Arrays.binarySearch(pendingFriends, friendId) >= 0;
+    }
+
+    /**
+     * Suggests the friends of the friends of a user who are not yet their friends, by number of mutual friends.
+     *
+     * @param userId The user ID.
+     * @param limit The maximum number of suggestions.
+     * @return The suggestions, the most mutual friends first (smallest ID first in case of a tie), empty while the graph is loading.
+     */
+    public List<Suggestion> suggest(long userId, int limit) {
+        if (!ready || limit <= 0) {
+            return List.of();
+        }
+        State current = state;
+        Csr csr = current.csr();
+        Map<Long, long[]> pending = current.pending();
+        int userNode = Arrays.binarySearch(csr.userIds, userId);
+        int from = userNode >= 0 ? csr.offsets[userNode] : 0;
+        int to = userNode >= 0 ? csr.offsets[userNode + 1] : 0;
+        long[] pendingFriends = pending.get(userId);
+        if (from == to && pendingFriends == null) {
+            return List.of();
+        }
+
+        /*
+        Nombre d'amis communs par nœud dans un tableau de compteurs réutilisé (pas d'allocation ni de hachage par arc parcouru) :
+        les amis et les amis des amis sont lus directement dans targets, sans recherche de leur id.
+        L'utilisateur et ses amis sont marqués exclus avant le parcours.
+        Les utilisateurs absents du graphe compact (relations en attente seulement) sont comptés à part, dans une map.
+        */
+        Counters counters = borrowCounters(csr.userIds.length);
+        Map<Long, Integer> others = new HashMap<>();
+        try {
+            exclude(csr, counters, others, userId);
+            for (int k = from; k < to; k++) {
+                counters.exclude(csr.targets[k]);
+            }
+            if (pendingFriends != null) {
+                for (long friendId : pendingFriends) {
+                    exclude(csr, counters, others, friendId);
+                }
+            }
+
+            for (int k = from; k < to; k++) {
+                int friendNode = csr.targets[k];
+                for (int j = csr.offsets[friendNode]; j < csr.offsets[friendNode + 1]; j++) {
+                    counters.add(csr.targets[j]);
+                }
+                if (!pending.isEmpty()) {
+                    countPending(csr, counters, others, pending.get(csr.userIds[friendNode]));
+                }
+            }
+            if (pendingFriends != null) {
+                for (long friendId : pendingFriends) {
+                    int friendNode = Arrays.binarySearch(csr.userIds, friendId);
+                    if (friendNode >= 0) {
+                        for (int j = csr.offsets[friendNode]; j < csr.offsets[friendNode + 1]; j++) {
+                            counters.add(csr.targets[j]);
+                        }
+                    }
+                    countPending(csr, counters, others, pending.get(friendId));
+                }
+            }
+
+            // les limit meilleurs candidats : tas de taille limit dont la tête est le moins bon.
+            Comparator<Suggestion> order = Comparator.comparingInt(Suggestion::mutualFriends).reversed().thenComparingLong(Suggestion::userId);
+            PriorityQueue<Suggestion> best = new PriorityQueue<>(limit + 1, order.reversed());
+            for (int i = 0; i < counters.touchedSize; i++) {
+                int node = counters.touched[i];
+                // négatif : utilisateur exclu.
+                if (counters.counts[node] > 0 && isBetter(best, limit, csr.userIds[node], counters.counts[node])) {
+                    offer(best, order, limit, new Suggestion(csr.userIds[node], counters.counts[node]));
+                }
+            }
+            for (Map.Entry<Long, Integer> other : others.entrySet()) {
+                if (other.getValue() > 0) {
+                    offer(best, order, limit, new Suggestion(other.getKey(), other.getValue()));
+                }
+            }
+            List<Suggestion> suggestions = new ArrayList<>(best);
+            suggestions.sort(order);
+            return suggestions;
+        } finally {
+            releaseCounters(counters);
+        }
+    }
+
+    private static void exclude(Csr csr, Counters counters, Map<Long, Integer> others, long userId) {
+        int node = Arrays.binarySearch(csr.userIds, userId);
+        if (node >= 0) {
+            counters.exclude(node);
+        } else {
+            others.put(userId, Counters.EXCLUDED);
+        }
+    }
+
+    // amis en attente d'un ami (null si aucun).
+    private static void countPending(Csr csr, Counters counters, Map<Long, Integer> others, long[] candidates) {
+        if (candidates == null) {
+            return;
+        }
+        for (long candidate : candidates) {
+            int node = Arrays.binarySearch(csr.userIds, candidate);
+            if (node >= 0) {
+                counters.add(node);
+            } else {
+                others.merge(candidate, 1, Integer::sum);
+            }
+        }
+    }
+
+    // avant de créer la Suggestion : la plupart des candidats n'entrent pas dans le tas.
+    private static boolean isBetter(PriorityQueue<Suggestion> best, int limit, long userId, int mutualFriends) {
+        if (best.size() < limit) {
+            return true;
+        }
+        Suggestion worst = best.peek();
+        return mutualFriends > worst.mutualFriends() || (mutualFriends == worst.mutualFriends() && userId < worst.userId());
+    }
+
+    private static void offer(PriorityQueue<Suggestion> best, Comparator<Suggestion> order, int limit, Suggestion suggestion) {
+        if (best.size() < limit) {
+            best.add(suggestion);
+        } else if (order.compare(suggestion, best.peek()) < 0) {
+            best.poll();
+            best.add(suggestion);
+        }
+    }
+
+    /*
+    Tableaux de compteurs réutilisés d'une recherche à l'autre : un par recherche simultanée (pas de ThreadLocal, inadapté aux threads virtuels).
+    Seules les cases modifiées sont remises à 0 après usage.
+    */
+    private Counters borrowCounters(int nodes) {
+        Counters counters = counterPool.poll();
+        // graphe agrandi depuis : tableau trop petit, abandonné.
+        return counters != null && counters.counts.length >= nodes ? counters : new Counters(nodes);
+    }
+
+    private void releaseCounters(Counters counters) {
+        counters.reset();
+        counterPool.offer(counters);
+    }
+
+    // copie triée avec un id de plus (inchangée si déjà présent).
+    private static long[] insert(long[] sorted, long id) {
+        int position = Arrays.binarySearch(sorted, id);
+        if (position >= 0) {
+            return sorted;
+        }
+        position = -position - 1;
+        long[] copy = new long[sorted.length + 1];
+        System.arraycopy(sorted, 0, copy, 0, position);
+        copy[position] = id;
+        System.arraycopy(sorted, position, copy, position + 1, sorted.length - position);
+        return copy;
+    }
+
+    // compteur par nœud du graphe compact, avec la liste des nœuds modifiés.
+    private static final class Counters {
+
+        // assez négatif pour ne jamais redevenir positif.
+        static final int EXCLUDED = Integer.MIN_VALUE / 2;
+
+        private final int[] counts;
+
+        private int[] touched = new int[256];
+
+        private int touchedSize;
+
+        Counters(int nodes) {
+            counts = new int[nodes];
+        }
+
+        void add(int node) {
+            touch(node);
+            counts[node]++;
+        }
+
+        // valeur fixe (et non ajoutée) : un ami présent 2 fois reste exclu.
+        void exclude(int node) {
+            touch(node);
+            counts[node] = EXCLUDED;
+        }
+
+        private void touch(int node) {
+            if (counts[node] == 0) {
+                if (touchedSize == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedSize * 2);
+                }
+                touched[touchedSize++] = node;
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedSize; i++) {
+                counts[touched[i]] = 0;
+            }
+            touchedSize = 0;
+        }
+    }
+}
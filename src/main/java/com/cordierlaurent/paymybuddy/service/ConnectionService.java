@@ -1,18 +1,35 @@
 package com.cordierlaurent.paymybuddy.service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import com.cordierlaurent.paymybuddy.dto.ConnectionImportResultDTO;
+import com.cordierlaurent.paymybuddy.dto.ConnectionPairDTO;
+import com.cordierlaurent.paymybuddy.dto.FriendDTO;
+import com.cordierlaurent.paymybuddy.dto.FriendSuggestionDTO;
+import com.cordierlaurent.paymybuddy.dto.UserEmailDTO;
 import com.cordierlaurent.paymybuddy.model.Connection;
 import com.cordierlaurent.paymybuddy.model.User;
 import com.cordierlaurent.paymybuddy.repository.ConnectionRepository;
 import com.cordierlaurent.paymybuddy.repository.UserRepository;
+import com.cordierlaurent.paymybuddy.util.ExpiringCache;
 import com.cordierlaurent.paymybuddy.util.Result;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -25,6 +42,15 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class ConnectionService {
 
+    // même contrôle que le formulaire (EmailDTO), compilé une seule fois.
+    private static final Pattern EMAIL = Pattern.compile("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,6}$");
+
+    // séparateurs d'une liste d'emails collée ou d'un fichier CSV.
+    private static final Pattern EMAIL_SEPARATORS = Pattern.compile("[\\s,;\"]+");
+
+    // nombre d'emails par requête IN (...) lors d'un import.
+    private static final int IMPORT_LOOKUP_CHUNK_SIZE = 500;
+
     @Autowired
     private ConnectionRepository connectionRepository;
     
@@ -33,6 +59,38 @@ public class ConnectionService {
     
     @Autowired
     private UserRepository userRepository;
+
+    @Autowired
+    private ConnectionGraph connectionGraph;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private RecentRecipientsService recentRecipientsService;
+
+    // nombre de suggestions affichées sur la page des relations.
+    @Value("${paymybuddy.suggestions.max-results:5}")
+    private int suggestionsMaxResults;
+
+    // nombre maximum d'emails dans un même import.
+    @Value("${paymybuddy.connection.import.max-size:1000}")
+    private int importMaxSize;
+    
+    // liste des amis par utilisateur : nombre maximum d'utilisateurs gardés et durée (en s).
+    @Value("${paymybuddy.friends.cache.max-size:10000}")
+    private int friendsCacheMaxSize;
+
+    @Value("${paymybuddy.friends.cache.ttl-seconds:300}")
+    private long friendsCacheSeconds;
+
+    // relue à chaque affichage de la page de transfert (et après chaque transfert), modifiée seulement par add.
+    private ExpiringCache<Long, List<FriendDTO>> friends;
+
+    @PostConstruct
+    void init() {
+        friends = new ExpiringCache<>(friendsCacheMaxSize, friendsCacheSeconds, TimeUnit.SECONDS);
+    }
         
     
     /**
@@ -51,7 +109,7 @@ public class ConnectionService {
         }
         email = email.trim().toLowerCase();
         // normalement déjà contrôlé par le type=email sur le formulaire.
-        if (!email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,6}$")) {
+        if (!EMAIL.matcher(email).matches()) {
             return new Result(false, "Format d'e-mail invalide.");
         }
         
@@ -59,21 +117,46 @@ public class ConnectionService {
         if (optionalFriend.isEmpty()) {
             return new Result(false, "L'utilisateur " + email + " n'existe pas"); 
         }
-        // pour simplification ensuite.
+        return add(user, optionalFriend.get(), email);
+    }
+
+    /**
+     * Adds a connection between the current user and another user specified by their ID (suggestions and search results,
+     * which do not show the email of the users).
+     *
+     * @param user The current user who wishes to add a connection.
+     * @param friendId The ID of the user to add as a friend.
+     * @return A Result object indicating the success or failure of the operation with an associated message.
+     */
+    public Result addById(User user, Long friendId) {
+        log.debug("ConnectionService.addById,userId="+user.getId()+",friendId="+friendId);
+
+        Optional<User> optionalFriend = friendId == null ? Optional.empty() : userRepository.findById(friendId);
+        if (optionalFriend.isEmpty()) {
+            return new Result(false, "L'utilisateur n'existe pas");
+        }
         User friend = optionalFriend.get();
-        
+        return add(user, friend, friend.getName());
+    }
+
+    // label : ce que l'utilisateur a saisi ou choisi (e-mail ou nom), repris dans les messages.
+    private Result add(User user, User friend, String label) {
         if (user.getId().equals(friend.getId())) {
             return new Result(false, "Vous ne pouvez pas vous ajouter vous-même"); 
         }
 
         if (connectionRepository.existsByUserIdAndFriendId(user.getId(), friend.getId())) {
-            return new Result(false, "Vous avez déjà ajouté l'utilisateur "+friend.getEmail());
+            return new Result(false, "Vous avez déjà ajouté l'utilisateur "+label);
         }
 
         Connection connection = new Connection();
         connection.setUser(user);
         connection.setFriend(friend);
         connectionRepository.save(connection);
+        // la liste des amis sera relue avec le nouvel ami.
+        friends.invalidate(user.getId());
+        recentRecipientsService.invalidate(user.getId());
+        connectionGraph.addAfterCommit(user.getId(), friend.getId());
 
         // optionnel : ajout de la relation inverse (friend vers user)
         // ATTENTION SI MISE EN ROUTE ==> IL FAUT FAIRE UN @Transactional sur cette fonction.
@@ -84,7 +167,117 @@ public class ConnectionService {
         connectionRepository.save(reverseConnection);
         */
 
-        return new Result(true,"L'utilisateur " + email + " a été ajouté");
+        return new Result(true,"L'utilisateur " + label + " a été ajouté");
+    }
+    
+    
+    /**
+     * Returns the maximum number of emails accepted in one import.
+     *
+     * @return The maximum size of an import.
+     */
+    public int getImportMaxSize() {
+        return importMaxSize;
+    }
+    
+    
+    /**
+     * Cuts a pasted list of emails or the content of a CSV file into normalized emails.
+     *
+     * @param text The emails, separated by spaces, line breaks, commas or semicolons (quotes are ignored).
+     * @return The emails trimmed and in lower case, without duplicates, in the order of the text.
+     */
+    public List<String> splitEmails(String text) {
+        Set<String> emails = new LinkedHashSet<>();
+        if (text != null) {
+            for (String email : EMAIL_SEPARATORS.split(text)) {
+                if (!email.isEmpty()) {
+                    emails.add(email.toLowerCase());
+                }
+            }
+        }
+        return new ArrayList<>(emails);
+    }
+    
+    
+    /**
+     * Adds connections between the current user and a list of users specified by their email.
+     * <p>
+     * Unlike add, the whole list costs a few queries: the users are looked up by IN (...) queries of IMPORT_LOOKUP_CHUNK_SIZE emails,
+     * the existing connections are read by one query, and the new connections are inserted together (JDBC batch).
+     * </p>
+     *
+     * @param user The current user who wishes to add the connections.
+     * @param emails The normalized emails (see splitEmails).
+     * @return The outcome of each email, in the order of the list.
+     * @throws IllegalArgumentException If there are more than paymybuddy.connection.import.max-size emails.
+     */
+    public List<ConnectionImportResultDTO> importConnections(User user, List<String> emails) {
+        log.debug("ConnectionService.importConnections,userId="+user.getId()+",size="+emails.size());
+        if (emails.size() > importMaxSize) {
+            throw new IllegalArgumentException("Too many emails : "+emails.size()+" > "+importMaxSize);
+        }
+
+        // le résultat de chaque email, rempli au fur et à mesure des contrôles.
+        Map<String, ConnectionImportResultDTO> results = new HashMap<>();
+        List<String> validEmails = new ArrayList<>();
+        for (String email : emails) {
+            if (EMAIL.matcher(email).matches()) {
+                validEmails.add(email);
+            } else {
+                results.put(email, new ConnectionImportResultDTO(email, false, "Format d'e-mail invalide."));
+            }
+        }
+
+        // email => id des utilisateurs existants (la base compare sans tenir compte de la casse).
+        Map<String, Long> userIds = new HashMap<>();
+        for (int from = 0; from < validEmails.size(); from += IMPORT_LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = validEmails.subList(from, Math.min(from + IMPORT_LOOKUP_CHUNK_SIZE, validEmails.size()));
+            for (UserEmailDTO found : userRepository.findIdsByEmails(chunk)) {
+                userIds.put(found.getEmail().toLowerCase(), found.getId());
+            }
+        }
+        Set<Long> existingFriendIds = userIds.isEmpty() ? Set.of()
+                : connectionRepository.findPairs(List.of(user.getId()), userIds.values()).stream()
+                        .map(ConnectionPairDTO::getFriendId)
+                        .collect(Collectors.toSet());
+
+        List<String> newEmails = new ArrayList<>();
+        List<Long> newFriendIds = new ArrayList<>();
+        List<Connection> connections = new ArrayList<>();
+        for (String email : validEmails) {
+            Long friendId = userIds.get(email);
+            if (friendId == null) {
+                results.put(email, new ConnectionImportResultDTO(email, false, "L'utilisateur " + email + " n'existe pas"));
+            } else if (friendId.equals(user.getId())) {
+                results.put(email, new ConnectionImportResultDTO(email, false, "Vous ne pouvez pas vous ajouter vous-même"));
+            } else if (existingFriendIds.contains(friendId)) {
+                results.put(email, new ConnectionImportResultDTO(email, false, "Vous avez déjà ajouté l'utilisateur " + email));
+            } else {
+                newEmails.add(email);
+                newFriendIds.add(friendId);
+                // références sans SELECT : seul l'id sert à l'insertion.
+                connections.add(new Connection(userRepository.getReferenceById(user.getId()), userRepository.getReferenceById(friendId)));
+            }
+        }
+
+        if (!connections.isEmpty()) {
+            try {
+                // une seule transaction, INSERT regroupés par paquets (hibernate.jdbc.batch_size).
+                connectionRepository.saveAll(connections);
+                friends.invalidate(user.getId());
+                recentRecipientsService.invalidate(user.getId());
+                newFriendIds.forEach(friendId -> connectionGraph.addAfterCommit(user.getId(), friendId));
+                newEmails.forEach(email -> results.put(email, new ConnectionImportResultDTO(email, true, "L'utilisateur " + email + " a été ajouté")));
+            } catch (DataIntegrityViolationException e) {
+                // une des relations a été ajoutée entre-temps (index unique) : rien n'a été enregistré.
+                log.warn("importConnections,userId="+user.getId()+",error : "+e.getMessage());
+                newEmails.forEach(email -> results.put(email, new ConnectionImportResultDTO(email, false, "Relation ajoutée entre-temps, veuillez réessayer")));
+            }
+        }
+
+        log.info("importConnections,userId="+user.getId()+",emails="+emails.size()+",added="+connections.size());
+        return emails.stream().map(results::get).toList();
     }
     
     
@@ -101,21 +294,67 @@ public class ConnectionService {
     
     /**
      * Retrieves the friends list of a given user.
+     * <p>
+     * The ID and the name of the friends are read by a single query, then kept in cache until the user adds a connection.
+     * </p>
      *
      * @param userId The ID of the user whose friends list we want to retrieve.
-     * @return A list of User representing the user's friends.
+     * @return A list of FriendDTO representing the user's friends, sorted by name.
      */
-    public List<User> getFriends(Long userId) {
+    public List<FriendDTO> getFriends(Long userId) {
         log.debug("getFriends,userId="+userId);
         
-        // recherche la liste des amis de cet utilisateur.
-        List<Connection> connections = connectionRepository.findByUserId(userId);
-        List<Long> friendIds = new ArrayList<>();
-        for (Connection connection : connections) {
-            friendIds.add(connection.getFriend().getId());
+        List<FriendDTO> friendDTOs = friends.get(userId);
+        if (friendDTOs == null) {
+            // une liste lue pendant l'ajout d'une relation peut ne pas la contenir : elle n'est pas gardée si la liste a été invalidée entre-temps.
+            long version = friends.version(userId);
+            friendDTOs = connectionRepository.findFriends(userId);
+            friends.putIfUnchanged(userId, friendDTOs, version);
+        }
+        return friendDTOs;
+    }
+    
+    
+    /**
+     * Searches the friends of a user whose name or email starts with a text (typeahead of the transfer page).
+     *
+     * @param userId The user ID.
+     * @param query  The beginning of a name or of an email.
+     * @return At most paymybuddy.typeahead.max-results friends, by name.
+     * @throws IllegalStateException If the search index is being loaded.
+     */
+    public List<FriendDTO> searchFriends(Long userId, String query) {
+        // la liste des amis (en cache) est triée par nom : les résultats le sont aussi.
+        List<Long> friendIds = getFriends(userId).stream().map(FriendDTO::getId).toList();
+        return userSearchIndex.searchAmong(query, friendIds, userService.getTypeaheadMaxResults()).stream()
+                .map(entry -> new FriendDTO(entry.id(), entry.name()))
+                .toList();
+    }
+
+    /**
+     * Suggests users the given user may know: the friends of their friends, by number of friends in common.
+     * <p>
+     * The suggestions are computed in memory by ConnectionGraph, then the suggested users are read by one query.
+     * </p>
+     *
+     * @param userId The user ID.
+     * @return At most paymybuddy.suggestions.max-results suggestions, the most mutual friends first.
+     */
+    public List<FriendSuggestionDTO> getSuggestions(Long userId) {
+        List<ConnectionGraph.Suggestion> suggestions = connectionGraph.suggest(userId, suggestionsMaxResults);
+        if (suggestions.isEmpty()) {
+            return List.of();
         }
-        // trouve tous les utilisateurs amis avec la liste des id amis
-        return userRepository.findAllById(friendIds);
+        Map<Long, User> users = userRepository.findAllById(suggestions.stream().map(ConnectionGraph.Suggestion::userId).toList())
+                .stream().collect(Collectors.toMap(User::getId, Function.identity()));
+        // ordre du graphe (utilisateurs supprimés ignorés).
+        return suggestions.stream()
+                .filter(suggestion -> users.containsKey(suggestion.userId()))
+                .map(suggestion -> {
+                    User suggested = users.get(suggestion.userId());
+                    return new FriendSuggestionDTO(suggested.getId(), suggested.getName(), suggestion.mutualFriends());
+                })
+                .toList();
     }
     
 }
@@ -0,0 +1,124 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.cordierlaurent.paymybuddy.dto.UserAmountDTO;
+import com.cordierlaurent.paymybuddy.exception.UserNotFoundException;
+import com.cordierlaurent.paymybuddy.model.BalanceSnapshot;
+import com.cordierlaurent.paymybuddy.model.LedgerEntry;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.repository.BalanceSnapshotRepository;
+import com.cordierlaurent.paymybuddy.repository.LedgerEntryRepository;
+import com.cordierlaurent.paymybuddy.repository.TransactionRepository;
+import com.cordierlaurent.paymybuddy.repository.UserRepository;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Balances computed from an append-only double-entry ledger (paymybuddy.balance.mode=ledger).
+ * <p>
+ * Each transfer inserts a debit entry for the sender and a credit entry for the receiver: no balance row is updated,
+ * so the transfers to the same account (a merchant, a popular friend) no longer wait for each other.
+ * Only the sender's row is locked, to check its balance, since two debits of the same account must be serialized.
+ * </p>
+ * <p>
+ * The balance of a user is the users.balance column (opening balance and the batch transfers), plus the total of its snapshot,
+ * plus the entries created after the snapshot. The snapshots are rolled forward by the LedgerCompactor, which keeps this last sum short.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "paymybuddy.balance.mode", havingValue = "ledger")
+@Log4j2
+public class LedgerBalanceServiceImpl implements BalanceService {
+
+    // repère des utilisateurs sans snapshot : toutes leurs écritures comptent.
+    private static final Timestamp NO_SNAPSHOT = new Timestamp(0);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Override
+    public BigDecimal getBalance(Long userId) {
+        BigDecimal balance = userRepository.findBalanceById(userId);
+        if (balance == null) {
+            throw new UserNotFoundException("Internal error : getBalance : "+userId);
+        }
+        return balance.add(getLedgerTotal(userId));
+    }
+
+    @Override
+    public Map<Long, BigDecimal> getBalances(Collection<User> users) {
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (User user : users) {
+            balances.put(user.getId(), user.getBalance());
+        }
+        if (balances.isEmpty()) {
+            return balances;
+        }
+        // 2 requêtes quel que soit le nombre d'utilisateurs : les snapshots, puis les écritures postérieures groupées par utilisateur.
+        for (BalanceSnapshot snapshot : balanceSnapshotRepository.findAllById(balances.keySet())) {
+            balances.merge(snapshot.getUserId(), snapshot.getLedgerTotal(), BigDecimal::add);
+        }
+        for (UserAmountDTO sum : ledgerEntryRepository.sumAmountSinceSnapshotByUserIds(balances.keySet())) {
+            balances.merge(sum.getUserId(), sum.getAmount(), BigDecimal::add);
+        }
+        return balances;
+    }
+
+    @Override
+    public boolean transfer(Transaction transaction) {
+        Long senderId = transaction.getSender().getId();
+        BigDecimal amount = transaction.getAmount();
+
+        // verrou sur la seule ligne de l'émetteur (SELECT ... FOR UPDATE) : ses débits sont sérialisés, les crédits ne verrouillent rien.
+        List<User> senders = userRepository.findAllByIdForUpdate(List.of(senderId));
+        if (senders.isEmpty()) {
+            throw new UserNotFoundException("Internal error : transfer : "+senderId);
+        }
+        /*
+        Lu après le verrou en READ COMMITTED (voir TransactionExecutor) : tous les débits de l'émetteur déjà validés sont comptés.
+        Seul un crédit en cours de validation peut manquer : le solde lu ne peut être que sous-estimé, jamais à découvert.
+        */
+        BigDecimal balance = senders.get(0).getBalance().add(getLedgerTotal(senderId));
+        log.debug("transfer,senderId="+senderId+",balance="+balance+",amount="+amount);
+        if (balance.compareTo(amount) < 0) {
+            return false;
+        }
+
+        // uniquement des insertions : la transaction puis ses deux écritures (le bénéficiaire inexistant est refusé par la clé étrangère).
+        transactionRepository.save(transaction);
+        ledgerEntryRepository.saveAll(List.of(
+                new LedgerEntry(transaction.getSender(), transaction, amount.negate()),
+                new LedgerEntry(transaction.getReceiver(), transaction, amount)));
+        return true;
+    }
+
+    // total du snapshot + écritures créées depuis.
+    private BigDecimal getLedgerTotal(Long userId) {
+        BalanceSnapshot snapshot = balanceSnapshotRepository.findById(userId).orElse(null);
+        if (snapshot == null) {
+            return ledgerEntryRepository.sumAmountByUserIdCreatedAfter(userId, NO_SNAPSHOT);
+        }
+        return snapshot.getLedgerTotal().add(ledgerEntryRepository.sumAmountByUserIdCreatedAfter(userId, snapshot.getEntriesUntil()));
+    }
+
+}
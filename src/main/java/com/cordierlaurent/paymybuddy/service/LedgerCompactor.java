@@ -0,0 +1,105 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cordierlaurent.paymybuddy.dto.UserAmountDTO;
+import com.cordierlaurent.paymybuddy.model.BalanceSnapshot;
+import com.cordierlaurent.paymybuddy.repository.BalanceSnapshotRepository;
+import com.cordierlaurent.paymybuddy.repository.LedgerEntryRepository;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Background task rolling the balance snapshots of the ledger forward (paymybuddy.balance.mode=ledger).
+ * <p>
+ * Every paymybuddy.ledger.compaction.interval-ms, the entries created since each snapshot are added to it, so that reading a balance
+ * only has to sum the few entries of the last interval. The entries themselves are never modified.
+ * </p>
+ * <p>
+ * Only the entries older than paymybuddy.ledger.compaction.grace-seconds are compacted: an entry inserted by a transaction
+ * not yet committed would otherwise be skipped by the snapshot and never counted.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "paymybuddy.balance.mode", havingValue = "ledger")
+@Log4j2
+public class LedgerCompactor {
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    // pour lire l'heure de la base : created_at est rempli par la base, pas par l'application.
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // âge minimum (en s) d'une écriture pour entrer dans un snapshot : doit dépasser la durée d'une transaction.
+    @Value("${paymybuddy.ledger.compaction.grace-seconds:60}")
+    private long graceSeconds;
+
+    /**
+     * Scheduled entry point: compacts the ledger, a concurrent compaction (another server) simply postpones the work to the next run.
+     */
+    @Scheduled(fixedDelayString = "${paymybuddy.ledger.compaction.interval-ms:60000}", initialDelayString = "${paymybuddy.ledger.compaction.interval-ms:60000}")
+    public void scheduledCompact() {
+        try {
+            compact();
+        } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+            log.warn("scheduledCompact,compactage concurrent, reporté : "+e.getMessage());
+        }
+    }
+
+    /**
+     * Adds to each snapshot the entries created since it and before the grace period, in one database transaction.
+     *
+     * @return The number of snapshots rolled forward.
+     */
+    public int compact() {
+        Integer count = transactionTemplate.execute(status -> {
+            Timestamp until = jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP - INTERVAL ? SECOND", Timestamp.class, graceSeconds);
+
+            // 1 requête : les montants à ajouter, groupés par utilisateur.
+            Map<Long, UserAmountDTO> sums = new HashMap<>();
+            for (UserAmountDTO sum : ledgerEntryRepository.sumAmountSinceSnapshotUntil(until)) {
+                sums.put(sum.getUserId(), sum);
+            }
+            if (sums.isEmpty()) {
+                return 0;
+            }
+
+            // 1 requête : les snapshots existants, les autres sont créés.
+            Map<Long, BalanceSnapshot> snapshots = new HashMap<>();
+            for (BalanceSnapshot snapshot : balanceSnapshotRepository.findAllById(sums.keySet())) {
+                snapshots.put(snapshot.getUserId(), snapshot);
+            }
+            for (UserAmountDTO sum : sums.values()) {
+                BalanceSnapshot snapshot = snapshots.computeIfAbsent(sum.getUserId(), BalanceSnapshot::new);
+                snapshot.setLedgerTotal(snapshot.getLedgerTotal().add(sum.getAmount()));
+                snapshot.setEntriesUntil(until);
+            }
+            // les UPDATE contrôlent la version (@Version) : un autre compactage entre temps => exception et rollback.
+            balanceSnapshotRepository.saveAll(snapshots.values());
+            return snapshots.size();
+        });
+        log.info("compact,snapshots="+count);
+        return count;
+    }
+
+}
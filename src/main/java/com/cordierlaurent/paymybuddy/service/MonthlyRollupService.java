@@ -0,0 +1,214 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.sql.Date;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cordierlaurent.paymybuddy.dto.MonthlyTotalDTO;
+import com.cordierlaurent.paymybuddy.exception.TransactionException;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.repository.TransactionRepository;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Service for the monthly totals sent and received by each user, per counterpart (table monthly_rollups).
+ * <p>
+ * The totals are updated in the database transaction of each transfer, so the reports read a few rows per month
+ * instead of all the transactions. The backfill builds them from the existing transactions, one month per database transaction,
+ * several months in parallel.
+ * The months are those of the time zone paymybuddy.rollups.time-zone, whatever the time zones of the JVM and of the MySQL session.
+ * </p>
+ */
+@Service
+@Log4j2
+public class MonthlyRollupService {
+
+    /*
+    Une transaction compte 2 fois : envoyée pour l'émetteur, reçue pour le bénéficiaire. Les lignes sont regroupées par (utilisateur, mois, interlocuteur)
+    puis ajoutées aux totaux existants.
+    ORDER BY : les lignes de monthly_rollups sont toujours verrouillées dans le même ordre (deux transferts A->B et B->A ne se bloquent pas mutuellement).
+    %1$s : condition sur les transactions (t) prises en compte, %2$s : leur mois.
+    */
+    private static final String UPSERT_ROLLUPS =
+            "INSERT INTO monthly_rollups (user_id, month, counterpart_id, sent_count, sent_amount, received_count, received_amount) "
+          + "SELECT * FROM ("
+          + " SELECT user_id, month, counterpart_id, SUM(sent_count) AS sc, SUM(sent_amount) AS sa, SUM(received_count) AS rc, SUM(received_amount) AS ra FROM ("
+          + "  SELECT t.sender_id AS user_id, %2$s AS month, t.receiver_id AS counterpart_id,"
+          + "   1 AS sent_count, t.amount AS sent_amount, 0 AS received_count, 0 AS received_amount FROM transactions t WHERE %1$s"
+          + "  UNION ALL"
+          + "  SELECT t.receiver_id, %2$s, t.sender_id, 0, 0, 1, t.amount FROM transactions t WHERE %1$s"
+          + " ) m GROUP BY user_id, month, counterpart_id"
+          + ") r ORDER BY r.user_id, r.month, r.counterpart_id "
+          + "ON DUPLICATE KEY UPDATE sent_count = monthly_rollups.sent_count + r.sc, sent_amount = monthly_rollups.sent_amount + r.sa, "
+          + "received_count = monthly_rollups.received_count + r.rc, received_amount = monthly_rollups.received_amount + r.ra";
+
+    /*
+    Le mois n'est pas calculé par la base (DATE_FORMAT dépend du fuseau de la session MySQL) : le mois et ses bornes sont passés par Java,
+    les bornes en secondes depuis 1970 (FROM_UNIXTIME les convertit dans le fuseau de la session, comme created_at est affiché).
+    Transactions d'un transfert : enregistrées à l'instant, dans le mois courant ou, à quelques millisecondes près, dans un mois voisin.
+    */
+    private static final String MONTH = "CASE WHEN t.created_at < FROM_UNIXTIME(:start) THEN :previousMonth "
+          + "WHEN t.created_at >= FROM_UNIXTIME(:end) THEN :nextMonth ELSE :month END";
+
+    private static final String UPSERT_BY_IDS = String.format(UPSERT_ROLLUPS, "t.id IN (:ids)", MONTH);
+
+    // sur l'index created (created_at) : toutes les transactions lues sont dans le mois.
+    private static final String UPSERT_BY_PERIOD = String.format(UPSERT_ROLLUPS,
+            "t.created_at >= FROM_UNIXTIME(:start) AND t.created_at < FROM_UNIXTIME(:end)", ":month");
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // nombre de mois reconstruits simultanément par le rattrapage.
+    @Value("${paymybuddy.rollups.backfill.threads:4}")
+    private int backfillThreads;
+
+    // fuseau des mois des totaux (le même que hibernate.jdbc.time_zone).
+    @Value("${paymybuddy.rollups.time-zone:Europe/Paris}")
+    private ZoneId zone;
+
+    /**
+     * Returns the current month, in the time zone of the totals.
+     *
+     * @return The current month.
+     */
+    public YearMonth currentMonth() {
+        return YearMonth.now(zone);
+    }
+
+    // mois (colonne month), mois voisins et bornes du mois en secondes depuis 1970 (indépendantes des fuseaux).
+    private MapSqlParameterSource monthParameters(YearMonth month) {
+        return new MapSqlParameterSource()
+                .addValue("month", Date.valueOf(month.atDay(1)))
+                .addValue("previousMonth", Date.valueOf(month.minusMonths(1).atDay(1)))
+                .addValue("nextMonth", Date.valueOf(month.plusMonths(1).atDay(1)))
+                .addValue("start", month.atDay(1).atStartOfDay(zone).toEpochSecond())
+                .addValue("end", month.plusMonths(1).atDay(1).atStartOfDay(zone).toEpochSecond());
+    }
+
+    /**
+     * Adds saved transactions to the monthly totals.
+     * <p>
+     * Must be called in the database transaction that saves them: the totals are committed or rolled back with the transactions.
+     * </p>
+     *
+     * @param transactions The transactions, saved in the current database transaction.
+     */
+    public void addTransactions(Collection<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        // les INSERT des transactions doivent être envoyés avant d'être relus (JdbcTemplate ne déclenche pas le flush de Hibernate).
+        transactionRepository.flush();
+        List<Long> ids = transactions.stream().map(Transaction::getId).toList();
+        namedParameterJdbcTemplate.update(UPSERT_BY_IDS, monthParameters(currentMonth()).addValue("ids", ids));
+    }
+
+    /**
+     * Rebuilds the monthly totals of a range of months from the transactions.
+     * <p>
+     * Each month is rebuilt in its own database transaction: its totals are deleted, then recomputed from its transactions.
+     * The transactions read are locked until the end of the month's rebuild, so a transfer saved meanwhile is counted once,
+     * either by the rebuild or by its own update after it.
+     * </p>
+     *
+     * @param from The first month rebuilt.
+     * @param to   The last month rebuilt (included).
+     * @return The number of months rebuilt.
+     * @throws IllegalArgumentException If from is after to.
+     */
+    public int backfill(YearMonth from, YearMonth to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Invalid months : "+from+" > "+to);
+        }
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(backfillThreads);
+        try {
+            List<Future<?>> months = new ArrayList<>();
+            for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+                YearMonth current = month;
+                months.add(executor.submit(() -> backfillMonth(current)));
+            }
+            for (Future<?> month : months) {
+                month.get();
+            }
+            log.info("backfill,from="+from+",to="+to+",months="+months.size()+",ms="+(System.nanoTime() - start) / 1_000_000);
+            return months.size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException("Internal error : backfill : interrupted");
+        } catch (ExecutionException e) {
+            throw new TransactionException("Internal error : backfill : "+e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void backfillMonth(YearMonth month) {
+        transactionTemplate.executeWithoutResult(status -> {
+            MapSqlParameterSource parameters = monthParameters(month);
+            namedParameterJdbcTemplate.update("DELETE FROM monthly_rollups WHERE month = :month", parameters);
+            namedParameterJdbcTemplate.update(UPSERT_BY_PERIOD, parameters);
+        });
+    }
+
+    /**
+     * Returns the first month having transactions, to backfill all the history.
+     *
+     * @return The month of the oldest transaction, or the current month if there is none.
+     */
+    public YearMonth getFirstMonth() {
+        Long first = namedParameterJdbcTemplate.queryForObject("SELECT UNIX_TIMESTAMP(MIN(created_at)) FROM transactions", Map.of(), Long.class);
+        return first == null ? currentMonth() : YearMonth.from(Instant.ofEpochSecond(first).atZone(zone));
+    }
+
+    /**
+     * Retrieves the monthly totals of a user, per counterpart.
+     *
+     * @param userId The user ID.
+     * @param from   The first month.
+     * @param to     The last month (included).
+     * @return The totals, by month then by counterpart name.
+     */
+    public List<MonthlyTotalDTO> getMonthlyTotals(Long userId, YearMonth from, YearMonth to) {
+        // lecture par la clé primaire (user_id, month, ...) : quelques lignes par mois, quel que soit le nombre de transactions.
+        return namedParameterJdbcTemplate.query(
+                "SELECT m.month, u.name, m.sent_count, m.sent_amount, m.received_count, m.received_amount "
+              + "FROM monthly_rollups m JOIN users u ON u.id = m.counterpart_id "
+              + "WHERE m.user_id = :userId AND m.month >= :from AND m.month <= :to ORDER BY m.month, u.name",
+                new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("from", Date.valueOf(from.atDay(1)))
+                        .addValue("to", Date.valueOf(to.atDay(1))),
+                (rs, rowNum) -> new MonthlyTotalDTO(
+                        YearMonth.from(rs.getDate("month").toLocalDate()).toString(),
+                        rs.getString("name"),
+                        rs.getInt("sent_count"),
+                        rs.getBigDecimal("sent_amount"),
+                        rs.getInt("received_count"),
+                        rs.getBigDecimal("received_amount")));
+    }
+}
@@ -0,0 +1,179 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cordierlaurent.paymybuddy.dto.FriendDTO;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.repository.ConnectionRepository;
+import com.cordierlaurent.paymybuddy.util.ExpiringCache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Ranking of the friends a user sends money to, for the list of the transfer page.
+ * <p>
+ * The ranking is read from the monthly totals (table monthly_rollups, updated by each transfer): the friends paid during the last
+ * paymybuddy.recipients.months months, the most recent month first, then the most transfers. It is completed with friends by name
+ * up to paymybuddy.recipients.max-results, so the page reads and displays the same number of friends whatever their count
+ * (the others are found by the typeahead search).
+ * The list is then kept in memory: when a transfer is committed, its receiver moves to the top of the sender's list.
+ * </p>
+ */
+@Service
+@Log4j2
+public class RecentRecipientsService {
+
+    /*
+    Lecture de la clé primaire de monthly_rollups (user_id, month, ...) : une ligne par mois et par destinataire de la période.
+    La jointure sur connections (index unique user_id, friend_id) écarte un destinataire qui ne serait plus une relation.
+    */
+    private static final String SELECT_RANKING =
+            "SELECT u.id, u.name FROM ("
+          + " SELECT m.counterpart_id, MAX(m.month) AS last_month, SUM(m.sent_count) AS sent FROM monthly_rollups m"
+          + " WHERE m.user_id = :userId AND m.month >= :from AND m.sent_count > 0 GROUP BY m.counterpart_id"
+          + ") r "
+          + "JOIN connections c ON c.user_id = :userId AND c.friend_id = r.counterpart_id "
+          + "JOIN users u ON u.id = r.counterpart_id "
+          + "ORDER BY r.last_month DESC, r.sent DESC, u.name LIMIT :limit";
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private ConnectionRepository connectionRepository;
+
+    @Autowired
+    private MonthlyRollupService monthlyRollupService;
+
+    // nombre d'amis affichés dans la liste de la page de transfert et nombre de mois de totaux pris en compte.
+    @Value("${paymybuddy.recipients.max-results:10}")
+    private int maxResults;
+
+    @Value("${paymybuddy.recipients.months:3}")
+    private int months;
+
+    @Value("${paymybuddy.recipients.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    @Value("${paymybuddy.recipients.cache.ttl-seconds:300}")
+    private long cacheSeconds;
+
+    private ExpiringCache<Long, List<FriendDTO>> recipients;
+
+    // deux transferts validés en même temps par le même émetteur : la lecture et le remplacement de sa liste ne doivent pas se croiser.
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    @PostConstruct
+    void init() {
+        recipients = new ExpiringCache<>(cacheMaxSize, cacheSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Retrieves the friends a user most likely sends money to.
+     *
+     * @param userId The user ID.
+     * @return At most paymybuddy.recipients.max-results friends: the recent recipients first, then other friends by name.
+     */
+    public List<FriendDTO> getRecipients(Long userId) {
+        List<FriendDTO> friends = recipients.get(userId);
+        if (friends != null) {
+            return friends;
+        }
+
+        // même principe que UserHistoryCache : une liste lue pendant une mise à jour de cet utilisateur n'est pas gardée (elle peut être antérieure au commit).
+        long version = recipients.version(userId);
+        friends = readRecipients(userId);
+        recipients.putIfUnchanged(userId, friends, version);
+        return friends;
+    }
+
+    private List<FriendDTO> readRecipients(Long userId) {
+        List<FriendDTO> friends = new ArrayList<>(namedParameterJdbcTemplate.query(SELECT_RANKING,
+                new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("from", Date.valueOf(monthlyRollupService.currentMonth().minusMonths(months - 1L).atDay(1)))
+                        .addValue("limit", maxResults),
+                (rs, rowNum) -> new FriendDTO(rs.getLong("id"), rs.getString("name"))));
+        if (friends.size() < maxResults) {
+            // complément par nom : assez de lignes pour remplacer celles déjà classées.
+            for (FriendDTO friend : connectionRepository.findFriends(userId, PageRequest.of(0, maxResults + friends.size()))) {
+                if (friends.size() == maxResults) {
+                    break;
+                }
+                if (friends.stream().noneMatch(ranked -> ranked.getId().equals(friend.getId()))) {
+                    friends.add(friend);
+                }
+            }
+        }
+        return List.copyOf(friends);
+    }
+
+    /**
+     * Moves the receiver of a transaction to the top of the sender's list once the database transaction saving it is committed
+     * (immediately outside a database transaction).
+     * <p>
+     * After a rollback, nothing changes.
+     * </p>
+     *
+     * @param transaction The saved transaction.
+     */
+    public void recordAfterCommit(Transaction transaction) {
+        Long senderId = transaction.getSender().getId();
+        FriendDTO receiver = new FriendDTO(transaction.getReceiver().getId(), transaction.getReceiver().getName());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(senderId, receiver);
+                }
+            });
+        } else {
+            record(senderId, receiver);
+        }
+    }
+
+    void record(Long senderId, FriendDTO receiver) {
+        updateLock.lock();
+        try {
+            List<FriendDTO> friends = recipients.get(senderId);
+            if (friends == null) {
+                // pas de liste en mémoire : une lecture en cours, antérieure au transfert, ne doit pas être gardée.
+                recipients.invalidate(senderId);
+            } else {
+                List<FriendDTO> updated = new ArrayList<>(friends.size() + 1);
+                updated.add(receiver);
+                friends.stream()
+                        .filter(friend -> !friend.getId().equals(receiver.getId()))
+                        .limit(maxResults - 1L)
+                        .forEach(updated::add);
+                recipients.put(senderId, List.copyOf(updated));
+            }
+        } finally {
+            updateLock.unlock();
+        }
+        log.debug("record,senderId="+senderId+",receiverId="+receiver.getId());
+    }
+
+    /**
+     * Removes the list of a user, read again at the next display (new connection).
+     *
+     * @param userId The user ID.
+     */
+    public void invalidate(Long userId) {
+        recipients.invalidate(userId);
+    }
+}
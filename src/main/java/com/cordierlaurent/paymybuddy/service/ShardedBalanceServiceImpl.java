@@ -0,0 +1,231 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.cordierlaurent.paymybuddy.exception.TransactionException;
+import com.cordierlaurent.paymybuddy.exception.UserNotFoundException;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.repository.TransactionRepository;
+import com.cordierlaurent.paymybuddy.repository.UserRepository;
+import com.cordierlaurent.paymybuddy.util.ExpiringCache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Balances stored in the users.balance column, split into sub-slots for the hot accounts (paymybuddy.balance.mode=sharded).
+ * <p>
+ * An account receiving many transfers (a shared pot, a merchant) can be given paymybuddy.balance.sharding.slots balance slots (table balance_slots).
+ * Each credit to such an account lands on a random slot instead of the users row, so concurrent credits no longer wait for the same row lock.
+ * A debit uses the users row first and gathers the missing amount from the slots only when needed.
+ * The balance of an account is its users.balance plus the sum of its slots. The other accounts work exactly as in column mode.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "paymybuddy.balance.mode", havingValue = "sharded")
+@Log4j2
+public class ShardedBalanceServiceImpl implements BalanceService {
+
+    private static final String CREDIT_SLOT = "UPDATE balance_slots SET balance = balance + ? WHERE user_id = ? AND slot = ?";
+
+    private static final String DEBIT_SLOT = "UPDATE balance_slots SET balance = balance - ? WHERE user_id = ? AND slot = ?";
+
+    // une ligne pour un slot d'un compte.
+    private record Slot(int slot, BigDecimal balance) {
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    // fournis par Spring Boot, ils participent à la transaction JPA en cours.
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // nombre de slots créés pour un compte chaud.
+    @Value("${paymybuddy.balance.sharding.slots:8}")
+    private int slotCount;
+
+    // durée (en s) pendant laquelle le nombre de slots d'un compte est gardé en mémoire.
+    @Value("${paymybuddy.balance.sharding.cache-seconds:60}")
+    private long cacheSeconds;
+
+    /*
+    Nombre de slots par compte (0 = compte normal) : sert seulement à aiguiller les crédits.
+    Une valeur périmée reste correcte : le crédit part sur la ligne users, et un débit refusé par la ligne users regarde toujours les slots.
+    */
+    private ExpiringCache<Long, Integer> slotCounts;
+
+    @PostConstruct
+    void init() {
+        slotCounts = new ExpiringCache<>(10000, cacheSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Splits the balance of a hot account into slots, so that its incoming transfers no longer contend on its users row.
+     * <p>
+     * The slots are created empty: the money already on the account stays on its users row. Calling it again only adds the missing slots.
+     * </p>
+     *
+     * @param userId The ID of the account.
+     * @return The number of slots of the account.
+     * @throws UserNotFoundException If the user does not exist.
+     */
+    public int enableSlots(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new UserNotFoundException("Internal error : enableSlots : "+userId);
+        }
+        List<Object[]> slots = new ArrayList<>(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            slots.add(new Object[] {userId, slot});
+        }
+        // INSERT IGNORE => les slots déjà créés sont conservés avec leur solde.
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO balance_slots (user_id, slot, balance) VALUES (?, ?, 0)", slots);
+        slotCounts.invalidate(userId);
+        log.info("enableSlots,userId="+userId+",slots="+slotCount);
+        return getSlotCount(userId);
+    }
+
+    @Override
+    public BigDecimal getBalance(Long userId) {
+        List<BigDecimal> balances = jdbcTemplate.queryForList(
+                "SELECT u.balance + COALESCE((SELECT SUM(s.balance) FROM balance_slots s WHERE s.user_id = u.id), 0) FROM users u WHERE u.id = ?",
+                BigDecimal.class, userId);
+        if (balances.isEmpty()) {
+            throw new UserNotFoundException("Internal error : getBalance : "+userId);
+        }
+        return balances.get(0);
+    }
+
+    @Override
+    public Map<Long, BigDecimal> getBalances(Collection<User> users) {
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (User user : users) {
+            balances.put(user.getId(), user.getBalance());
+        }
+        if (balances.isEmpty()) {
+            return balances;
+        }
+        // 1 requête : la somme des slots de tous les comptes chauds concernés.
+        namedParameterJdbcTemplate.query(
+                "SELECT user_id, SUM(balance) AS total FROM balance_slots WHERE user_id IN (:userIds) GROUP BY user_id",
+                Map.of("userIds", balances.keySet()),
+                rs -> {
+                    balances.merge(rs.getLong("user_id"), rs.getBigDecimal("total"), BigDecimal::add);
+                });
+        return balances;
+    }
+
+    @Override
+    public boolean transfer(Transaction transaction) {
+        Long senderId = transaction.getSender().getId();
+        Long receiverId = transaction.getReceiver().getId();
+        BigDecimal amount = transaction.getAmount();
+
+        if (!debit(senderId, amount)) {
+            return false;
+        }
+
+        // sauvegarde de la transaction.
+        transactionRepository.save(transaction);
+
+        credit(receiverId, amount);
+        return true;
+    }
+
+    // débit de la ligne users, complétée par les slots si elle ne suffit pas.
+    private boolean debit(Long userId, BigDecimal amount) {
+        // cas courant : une seule requête, comme en mode column.
+        if (userRepository.debitIfSufficient(userId, amount) == 1) {
+            return true;
+        }
+
+        // toujours dans le même ordre : la ligne users puis les slots (par numéro) => pas d'interblocage entre deux débits.
+        List<BigDecimal> mains = jdbcTemplate.queryForList("SELECT balance FROM users WHERE id = ? FOR UPDATE", BigDecimal.class, userId);
+        if (mains.isEmpty()) {
+            throw new UserNotFoundException("Internal error : debit : "+userId);
+        }
+        BigDecimal main = mains.get(0);
+        List<Slot> slots = jdbcTemplate.query(
+                "SELECT slot, balance FROM balance_slots WHERE user_id = ? AND balance > 0 ORDER BY slot FOR UPDATE",
+                (rs, rowNum) -> new Slot(rs.getInt("slot"), rs.getBigDecimal("balance")),
+                userId);
+
+        BigDecimal total = main;
+        for (Slot slot : slots) {
+            total = total.add(slot.balance());
+        }
+        log.debug("debit,userId="+userId+",main="+main+",slots="+slots.size()+",total="+total+",amount="+amount);
+        if (total.compareTo(amount) < 0) {
+            return false;
+        }
+
+        // on ne vide que les slots nécessaires pour couvrir le montant manquant.
+        BigDecimal missing = amount.subtract(main);
+        List<Object[]> takes = new ArrayList<>();
+        for (Slot slot : slots) {
+            if (missing.signum() <= 0) {
+                break;
+            }
+            BigDecimal take = slot.balance().min(missing);
+            takes.add(new Object[] {take, userId, slot.slot()});
+            missing = missing.subtract(take);
+        }
+        jdbcTemplate.batchUpdate(DEBIT_SLOT, takes);
+        // la ligne users donne tout ce qu'elle a : son solde passe à 0.
+        jdbcTemplate.update("UPDATE users SET balance = balance - ? WHERE id = ?", main, userId);
+        return true;
+    }
+
+    // crédit sur un slot au hasard pour un compte chaud, sur la ligne users sinon.
+    private void credit(Long userId, BigDecimal amount) {
+        int slots = getSlotCount(userId);
+        if (slots > 0) {
+            int slot = ThreadLocalRandom.current().nextInt(slots);
+            int creditedRows = jdbcTemplate.update(CREDIT_SLOT, amount, userId, slot);
+            log.debug("credit,userId="+userId+",slot="+slot+",rowsAffected="+creditedRows);
+            if (creditedRows == 1) {
+                return;
+            }
+            // nombre de slots périmé : on le relira au prochain crédit.
+            slotCounts.invalidate(userId);
+        }
+
+        int creditedRows = userRepository.credit(userId, amount);
+        log.debug("credit,userId="+userId+",rowsAffected="+creditedRows);
+        // exception => rollback du débit et de la transaction.
+        if (creditedRows != 1) {
+            throw new TransactionException("Internal error : transfer : credit error : "+userId);
+        }
+    }
+
+    private int getSlotCount(Long userId) {
+        Integer count = slotCounts.get(userId);
+        if (count == null) {
+            count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_slots WHERE user_id = ?", Integer.class, userId);
+            slotCounts.put(userId, count);
+        }
+        return count;
+    }
+
+}
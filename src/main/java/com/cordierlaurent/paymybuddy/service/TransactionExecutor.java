@@ -0,0 +1,95 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cordierlaurent.paymybuddy.exception.TransactionException;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Executes units of work in database transactions with a retry policy.
+ * <p>
+ * When the database reports a deadlock or a lock timeout, the whole transaction is rolled back and replayed
+ * up to paymybuddy.transfer.retry.max-attempts times, waiting a little longer before each new attempt.
+ * </p>
+ * <p>
+ * The transactions are run at READ COMMITTED: each read sees the data committed before it, and not the snapshot taken by the first read
+ * of the transaction (REPEATABLE READ, the InnoDB default). A balance read after taking the lock of the sender therefore includes
+ * the debits committed while waiting for this lock.
+ * </p>
+ */
+@Service
+@Log4j2
+public class TransactionExecutor {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // permet d'ouvrir une transaction par programmation (et donc de la rejouer), propre à cette classe pour ne pas changer l'isolation des autres.
+    private TransactionTemplate transactionTemplate;
+    
+    // nombre maximum de tentatives en cas de deadlock ou de timeout de verrou.
+    @Value("${paymybuddy.transfer.retry.max-attempts:3}")
+    private int maxAttempts;
+    
+    // attente de base (en ms) entre deux tentatives.
+    @Value("${paymybuddy.transfer.retry.backoff-ms:50}")
+    private long backoffMs;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        /*
+        En REPEATABLE READ, la 1ère lecture de la transaction (ex : la clé d'idempotence) fige l'instantané avant le verrou de l'émetteur :
+        en mode ledger, la somme des écritures lue ensuite ignorerait les débits validés pendant l'attente du verrou => découvert possible.
+        */
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    /**
+     * Executes a unit of work in a new database transaction, retrying it when the database reports a deadlock or a lock timeout.
+     *
+     * @param <T>  The type of the result.
+     * @param work The unit of work to execute: it must not keep any state between two attempts.
+     * @return The result of the unit of work.
+     * @throws PessimisticLockingFailureException If the last attempt still fails on a lock.
+     */
+    public <T> T executeWithRetry(Supplier<T> work) {
+        int attempt = 1;
+        while (true) {
+            try {
+                // Rollback automatique si une erreur se produit (équivalent de @Transactional mais rejouable).
+                return transactionTemplate.execute(status -> work.get());
+            // CannotAcquireLockException (deadlock MySQL 1213) et le timeout de verrou (MySQL 1205) héritent de PessimisticLockingFailureException.
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    log.error("executeWithRetry,attempt="+attempt+",abandon : "+e.getMessage());
+                    throw e;
+                }
+                log.warn("executeWithRetry,attempt="+attempt+",nouvelle tentative : "+e.getMessage());
+                pause(backoffMs * attempt);
+                attempt++;
+            }
+        }
+    }
+    
+    // attente avant une nouvelle tentative pour laisser l'autre transaction se terminer.
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException("Internal error : executeWithRetry : interrupted");
+        }
+    }
+    
+}
@@ -0,0 +1,222 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Service for exporting the transactions (for administration only).
+ * <p>
+ * The rows are streamed one by one by the MySQL driver (forward-only, read-only statement) and written to the output as they are read:
+ * the memory used does not depend on the number of exported transactions.
+ * </p>
+ */
+@Service
+@Log4j2
+public class TransactionExportService {
+
+    /** Comma separated values, with a header line. */
+    public static final String FORMAT_CSV = "csv";
+
+    /** One JSON object per line (newline delimited JSON). */
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // nombre de lignes écrites entre deux envois au client.
+    @Value("${paymybuddy.export.flush-rows:1000}")
+    private int flushRows;
+
+    /*
+    JdbcTemplate dédié : Integer.MIN_VALUE est la taille de lecture qui demande au driver MySQL de lire les lignes en flux
+    (sinon tout le résultat est chargé en mémoire). Limité à l'export : useCursorFetch sur tout le pool forcerait les requêtes
+    préparées côté serveur pour toutes les requêtes. La connexion reste occupée jusqu'à la fin de la lecture.
+    */
+    private JdbcTemplate exportJdbcTemplate;
+
+    @PostConstruct
+    void init() {
+        exportJdbcTemplate = new JdbcTemplate(dataSource);
+        exportJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    /**
+     * Checks an export format.
+     *
+     * @param format The format (csv or ndjson).
+     * @throws IllegalArgumentException If the format is unknown.
+     */
+    public void checkFormat(String format) {
+        if (!FORMAT_CSV.equals(format) && !FORMAT_NDJSON.equals(format)) {
+            throw new IllegalArgumentException("Unknown export format : "+format);
+        }
+    }
+
+    /**
+     * Writes the transactions matching the filters to an output stream.
+     *
+     * @param format The format (csv or ndjson).
+     * @param from   The first day exported (included), or null.
+     * @param to     The last day exported (included), or null.
+     * @param userId The user whose sent and received transactions are exported, or null for all users.
+     * @param gzip   True to compress the output on the fly.
+     * @param output The output stream, not closed by this method.
+     * @return The number of exported transactions.
+     * @throws IOException If the output cannot be written.
+     * @throws IllegalArgumentException If the format is unknown.
+     */
+    public long export(String format, LocalDate from, LocalDate to, Long userId, boolean gzip, OutputStream output) throws IOException {
+        checkFormat(format);
+
+        /*
+        Parcours dans l'ordre de la clé primaire : MySQL lit l'index cluster dans l'ordre, sans tri préalable de toutes les lignes (filesort)
+        => les premières lignes partent tout de suite, même sur toute la table.
+        */
+        StringBuilder sql = new StringBuilder(
+                "SELECT t.id, t.created_at, s.name AS sender_name, r.name AS receiver_name, t.description, t.amount "
+              + "FROM transactions t JOIN users s ON s.id = t.sender_id JOIN users r ON r.id = t.receiver_id WHERE 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND t.created_at >= ?");
+            parameters.add(Timestamp.valueOf(from.atStartOfDay()));
+        }
+        if (to != null) {
+            sql.append(" AND t.created_at < ?");
+            parameters.add(Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        }
+        if (userId != null) {
+            sql.append(" AND (t.sender_id = ? OR t.receiver_id = ?)");
+            parameters.add(userId);
+            parameters.add(userId);
+        }
+        sql.append(" ORDER BY t.id");
+
+        // le flux du client n'est pas fermé ici (il appartient à la réponse HTTP), seul le GZIP est terminé.
+        // syncFlush : flush() envoie aussi les données déjà compressées, sinon le GZIP les garde jusqu'à la fin.
+        GZIPOutputStream gzipOutput = gzip ? new GZIPOutputStream(output, 8192, true) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipOutput : output, StandardCharsets.UTF_8));
+        RowWriter rowWriter = FORMAT_CSV.equals(format) ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+
+        long[] count = {0};
+        try {
+            exportJdbcTemplate.query(sql.toString(), rs -> {
+                try {
+                    rowWriter.write(rs);
+                    // envoi par paquets : le client reçoit les données au fil de l'eau et les tampons restent petits.
+                    if (++count[0] % flushRows == 0) {
+                        rowWriter.flush();
+                        writer.flush();
+                        if (gzipOutput != null) {
+                            gzipOutput.flush();
+                        }
+                        output.flush();
+                    }
+                } catch (IOException e) {
+                    // client déconnecté : l'exception arrête la lecture du curseur et libère la connexion.
+                    throw new UncheckedIOException(e);
+                }
+            }, parameters.toArray());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        rowWriter.flush();
+        writer.flush();
+        if (gzipOutput != null) {
+            gzipOutput.finish();
+        }
+        output.flush();
+
+        log.info("export,format="+format+",from="+from+",to="+to+",userId="+userId+",gzip="+gzip+",rows="+count[0]);
+        return count[0];
+    }
+
+    // écriture d'une ligne du ResultSet dans un format.
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        // vide les tampons propres au format dans le Writer.
+        default void flush() throws IOException {
+        }
+    }
+
+    private static class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write("id,createdAt,sender,receiver,description,amount\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writer.write(rs.getLong("id") + "," + rs.getTimestamp("created_at").toLocalDateTime() + ","
+                    + quote(rs.getString("sender_name")) + "," + quote(rs.getString("receiver_name")) + ","
+                    + quote(rs.getString("description")) + "," + rs.getBigDecimal("amount").toPlainString() + "\r\n");
+        }
+
+        // RFC 4180 : champ entre guillemets, guillemets doublés.
+        private static String quote(String value) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    }
+
+    private class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer) throws IOException {
+            generator = objectMapper.getFactory().createGenerator(writer);
+            // le Writer appartient à export() : le générateur ne doit pas le fermer.
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // pas d'espace entre deux objets : chaque objet se termine par un retour à la ligne (écrit ci-dessous).
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong("id"));
+            generator.writeStringField("createdAt", rs.getTimestamp("created_at").toLocalDateTime().toString());
+            generator.writeStringField("sender", rs.getString("sender_name"));
+            generator.writeStringField("receiver", rs.getString("receiver_name"));
+            generator.writeStringField("description", rs.getString("description"));
+            generator.writeNumberField("amount", rs.getBigDecimal("amount"));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
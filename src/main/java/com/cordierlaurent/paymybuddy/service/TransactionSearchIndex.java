@@ -0,0 +1,310 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cordierlaurent.paymybuddy.model.Transaction;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * In-memory inverted index of the words of the transaction descriptions, per user.
+ * <p>
+ * Each user has a sorted map term -> sorted list of the IDs of their transactions (sent and received) containing the term:
+ * a query term is a prefix, found by a range of the sorted map, and the terms of a query are combined by intersecting the lists.
+ * The index is rebuilt from the database at startup, by ranges of IDs read in parallel, then updated when a transfer is committed.
+ * The IDs found are then read from the database, which stays the reference (deleted transactions are simply not found).
+ * </p>
+ */
+@Service
+@Log4j2
+public class TransactionSearchIndex {
+
+    // les termes plus courts ne sont pas indexés (articles, "à", ...).
+    static final int MIN_TERM_LENGTH = 2;
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final long[] EMPTY = new long[0];
+
+    // liste triée et sans doublon des id des transactions d'un terme.
+    private static final class Postings {
+
+        private long[] ids = new long[4];
+
+        private int size;
+
+        void add(long id) {
+            // cas courant : les id arrivent dans l'ordre croissant => ajout en fin.
+            int position = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                position = -position - 1;
+            } else if (position < size) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+    }
+
+    // index d'un utilisateur : lectures simultanées, écritures exclusives (ReentrantReadWriteLock plutôt que synchronized pour les threads virtuels).
+    private static final class UserIndex {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private final TreeMap<String, Postings> terms = new TreeMap<>();
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // reconstruction au démarrage : nombre d'id par requête et nombre de requêtes simultanées.
+    @Value("${paymybuddy.search.rebuild.chunk-size:10000}")
+    private int chunkSize;
+
+    @Value("${paymybuddy.search.rebuild.threads:4}")
+    private int threads;
+
+    private final Map<Long, UserIndex> users = new ConcurrentHashMap<>();
+
+    // faux pendant la reconstruction : les résultats seraient incomplets.
+    private volatile boolean ready;
+
+    /**
+     * Indicates whether the index has been built and can answer queries.
+     *
+     * @return True once the rebuild at startup is finished.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Rebuilds the index from all the transactions of the database.
+     * <p>
+     * The range of IDs is cut into chunks of paymybuddy.search.rebuild.chunk-size IDs, each read by one query on the primary key,
+     * paymybuddy.search.rebuild.threads chunks at a time.
+     * </p>
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        ready = false;
+        users.clear();
+
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM transactions");
+        AtomicLong count = new AtomicLong();
+        if (range.get("min_id") != null) {
+            long minId = ((Number) range.get("min_id")).longValue();
+            long maxId = ((Number) range.get("max_id")).longValue();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> chunks = new ArrayList<>();
+                for (long from = minId; from <= maxId; from += chunkSize) {
+                    long chunkFrom = from;
+                    chunks.add(executor.submit(() -> jdbcTemplate.query(
+                            "SELECT id, sender_id, receiver_id, description FROM transactions WHERE id >= ? AND id < ?",
+                            rs -> {
+                                index(rs.getLong("id"), rs.getLong("sender_id"), rs.getLong("receiver_id"), rs.getString("description"));
+                                count.incrementAndGet();
+                            },
+                            chunkFrom, chunkFrom + chunkSize)));
+                }
+                for (Future<?> chunk : chunks) {
+                    chunk.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("rebuild,interrupted");
+                return;
+            } catch (ExecutionException e) {
+                // index incomplet : la recherche reste indisponible plutôt que de donner de faux résultats.
+                log.error("rebuild,error : " + e.getCause().getMessage());
+                return;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        ready = true;
+        log.info("rebuild,transactions="+count.get()+",users="+users.size()+",ms="+(System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Adds a transaction to the index once the database transaction saving it is committed (immediately outside a database transaction).
+     * <p>
+     * After a rollback, the transaction is not indexed.
+     * </p>
+     *
+     * @param transaction The saved transaction (its ID is set).
+     */
+    public void indexAfterCommit(Transaction transaction) {
+        long id = transaction.getId();
+        long senderId = transaction.getSender().getId();
+        long receiverId = transaction.getReceiver().getId();
+        String description = transaction.getDescription();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index(id, senderId, receiverId, description);
+                }
+            });
+        } else {
+            index(id, senderId, receiverId, description);
+        }
+    }
+
+    // la transaction est trouvée par l'émetteur et par le bénéficiaire.
+    void index(long id, long senderId, long receiverId, String description) {
+        List<String> terms = tokenize(description);
+        for (long userId : new long[] {senderId, receiverId}) {
+            UserIndex userIndex = users.computeIfAbsent(userId, key -> new UserIndex());
+            userIndex.lock.writeLock().lock();
+            try {
+                for (String term : terms) {
+                    userIndex.terms.computeIfAbsent(term, key -> new Postings()).add(id);
+                }
+            } finally {
+                userIndex.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Finds the transactions of a user whose description contains all the terms of a query.
+     * <p>
+     * Each term of the query is a prefix: "rest" finds "restaurant". Accents and case are ignored.
+     * </p>
+     *
+     * @param userId The user ID.
+     * @param query  The terms, separated by spaces or punctuation.
+     * @param limit  The maximum number of IDs returned.
+     * @return The IDs of the transactions found, the most recent (greatest ID) first.
+     * @throws IllegalStateException If the index is being rebuilt.
+     */
+    public List<Long> search(Long userId, String query, int limit) {
+        if (!ready) {
+            throw new IllegalStateException("La recherche est en cours d'initialisation, réessayez dans quelques instants");
+        }
+        List<String> terms = tokenize(query);
+        UserIndex userIndex = users.get(userId);
+        if (terms.isEmpty() || userIndex == null) {
+            return List.of();
+        }
+
+        long[] found = null;
+        userIndex.lock.readLock().lock();
+        try {
+            for (String term : terms) {
+                long[] ids = prefixIds(userIndex.terms, term);
+                found = found == null ? ids : intersect(found, ids);
+                if (found.length == 0) {
+                    return List.of();
+                }
+            }
+        } finally {
+            userIndex.lock.readLock().unlock();
+        }
+
+        List<Long> result = new ArrayList<>(Math.min(limit, found.length));
+        for (int i = found.length - 1; i >= 0 && result.size() < limit; i--) {
+            result.add(found[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Cuts a text into indexed terms: lower case, without accents, at least MIN_TERM_LENGTH letters or digits, without duplicates.
+     *
+     * @param text The text.
+     * @return The terms, in the order of the text.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        String normalized = ACCENTS.matcher(Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)).replaceAll("");
+        List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(normalized)) {
+            if (term.length() >= MIN_TERM_LENGTH && !terms.contains(term)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    // union triée des listes de tous les termes commençant par prefix (plage [prefix, prefix + Character.MAX_VALUE[ de la map triée).
+    private static long[] prefixIds(TreeMap<String, Postings> terms, String prefix) {
+        NavigableMap<String, Postings> matches = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        long[] union = EMPTY;
+        for (Postings postings : matches.values()) {
+            union = union(union, postings.ids, postings.size);
+        }
+        return union;
+    }
+
+    // fusion de deux listes triées, sans doublon.
+    private static long[] union(long[] a, long[] b, int bSize) {
+        long[] merged = new long[a.length + bSize];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < bSize) {
+            long next;
+            if (j == bSize || (i < a.length && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j++;
+            }
+            merged[k++] = next;
+        }
+        return k == merged.length ? merged : Arrays.copyOf(merged, k);
+    }
+
+    // intersection de deux listes triées.
+    private static long[] intersect(long[] a, long[] b) {
+        long[] common = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (b[j] < a[i]) {
+                j++;
+            } else {
+                common[k++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, k);
+    }
+}
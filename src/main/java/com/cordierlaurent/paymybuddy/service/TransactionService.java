@@ -1,23 +1,36 @@
 package com.cordierlaurent.paymybuddy.service;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.cordierlaurent.paymybuddy.dto.AdminTransactionDTO;
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionFilterDTO;
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionPageDTO;
+import com.cordierlaurent.paymybuddy.dto.IdempotentTransferDTO;
 import com.cordierlaurent.paymybuddy.dto.UserTransactionDTO;
+import com.cordierlaurent.paymybuddy.dto.UserTransactionPageDTO;
+import com.cordierlaurent.paymybuddy.exception.AccountLockTimeoutException;
 import com.cordierlaurent.paymybuddy.exception.TransactionException;
 import com.cordierlaurent.paymybuddy.model.Transaction;
 import com.cordierlaurent.paymybuddy.model.User;
 import com.cordierlaurent.paymybuddy.repository.ConnectionRepository;
 import com.cordierlaurent.paymybuddy.repository.TransactionRepository;
-import com.cordierlaurent.paymybuddy.repository.UserRepository;
+import com.cordierlaurent.paymybuddy.util.ExpiringCache;
+import com.cordierlaurent.paymybuddy.util.KeysetCursor;
+import com.cordierlaurent.paymybuddy.util.SortedMerge;
 import com.cordierlaurent.paymybuddy.util.Result;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -33,16 +46,81 @@ public class TransactionService {
     @Autowired
     private TransactionRepository transactionRepository;
     
-    @Autowired
-    private UserRepository userRepository;
-        
     @Autowired
     private ConnectionRepository connectionRepository;
     
+    @Autowired
+    private ConnectionGraph connectionGraph;
+    
+    @Autowired
+    private AccountLockManager accountLockManager;
+    
+    @Autowired
+    private TransactionExecutor transactionExecutor;
+    
+    @Autowired
+    private TransferPipeline transferPipeline;
+    
+    @Autowired
+    private BalanceService balanceService;
+    
+    @Autowired
+    private TransactionSearchIndex transactionSearchIndex;
+    
+    @Autowired
+    private MonthlyRollupService monthlyRollupService;
+    
+    @Autowired
+    private UserHistoryCache userHistoryCache;
+
+    @Autowired
+    private RecentRecipientsService recentRecipientsService;
+    
+    // ordre de l'historique, le même que celui des requêtes : du plus récent au plus ancien, l'id départageant les transactions de la même seconde.
+    private static final Comparator<UserTransactionDTO> HISTORY_ORDER =
+            Comparator.comparing(UserTransactionDTO::getCreatedAt).thenComparing(UserTransactionDTO::getId).reversed();
+
+    // nombre maximum de transactions affichées par une recherche.
+    @Value("${paymybuddy.search.max-results:50}")
+    private int searchMaxResults;
+
+    // nombre de transactions par page de l'historique.
+    @Value("${paymybuddy.history.page-size:20}")
+    private int historyPageSize;
+    
+    // page d'administration : nombre de transactions par page et durée du cache des totaux.
+    @Value("${paymybuddy.admin.transactions.page-size:50}")
+    private int adminPageSize;
+    
+    @Value("${paymybuddy.admin.transactions.count-cache-seconds:60}")
+    private long adminCountCacheSeconds;
+    
+    // totaux de la page d'administration par combinaison de filtres.
+    private ExpiringCache<List<Object>, Long> adminCounts;
+    
+    // nombre maximum de clés d'idempotence gardées en mémoire et durée de conservation.
+    @Value("${paymybuddy.transfer.idempotency.cache-size:10000}")
+    private int idempotencyCacheSize;
+    
+    @Value("${paymybuddy.transfer.idempotency.ttl-minutes:60}")
+    private long idempotencyTtlMinutes;
+    
+    // transferts récents (bénéficiaire, montant) par "senderId:clé" : une soumission rejouée est traitée sans toucher aux soldes.
+    private ExpiringCache<String, IdempotentTransferDTO> idempotentTransfers;
+    
+    @PostConstruct
+    void init() {
+        idempotentTransfers = new ExpiringCache<>(idempotencyCacheSize, idempotencyTtlMinutes, TimeUnit.MINUTES);
+        adminCounts = new ExpiringCache<>(1000, adminCountCacheSeconds, TimeUnit.SECONDS);
+    }
+    
     /**
      * Adds a transaction between two users by handling balance checks and updates
      * <p>
+     * The sender is debited (only if the balance is sufficient) and the receiver is credited in the same database transaction, by the BalanceService of the configured mode (paymybuddy.balance.mode).
      * This method is transactional: in case of error, all operations are canceled.
+     * Concurrent transfers on the same accounts are serialized in memory by the AccountLockManager.
+     * If the database reports a deadlock or a lock timeout, the whole transaction is retried according to the retry policy (paymybuddy.transfer.retry.*).
      * </p>
      *
      * @param sender      The user sending the money.
@@ -53,10 +131,31 @@ public class TransactionService {
      * @throws IllegalArgumentException If any parameters are invalid (null, negative amount, empty description).
      * @throws TransactionException     If the user tries to send money to themselves or if the users are not connected to each other.
      */
-    // Rollback automatique si une erreur se produit (simplifie énormément le code => voir TransactionTemplate (alternative Spring Boot) ou EntityManager (niveau le plus bas).
-    @Transactional
     public Result addTransaction(User sender, User receiver, String description, BigDecimal amount) {
-        log.debug("addTransaction,sender="+sender+",receiver="+receiver+",description="+description+",amount="+amount);
+        return addTransaction(sender, receiver, description, amount, null);
+    }
+    
+    /**
+     * Adds a transaction between two users, at most once for a given idempotency key.
+     * <p>
+     * If a transfer was already made by the sender with the same key, it is not made again and its result is returned:
+     * recent keys are answered from a bounded in-memory cache, older ones from the database (unique index on sender and key).
+     * A key already used for another receiver or another amount is refused (failure result), the first transfer is kept.
+     * A failed transfer does not record its key, so it can be submitted again with the same key.
+     * </p>
+     *
+     * @param sender         The user sending the money.
+     * @param receiver       The user receiving the money.
+     * @param description    Description of the transaction.
+     * @param amount         Transaction amount.
+     * @param idempotencyKey Key chosen by the client for this transfer (at most 64 characters), or null.
+     * @return A Result object indicating the success or failure of the operation.
+     * @throws IllegalArgumentException If any parameters are invalid (null, negative amount, empty description, invalid key).
+     * @throws TransactionException     If the user tries to send money to themselves or if the users are not connected to each other.
+     */
+    // Pas de @Transactional ici : la transaction est ouverte par TransactionExecutor pour pouvoir la rejouer entièrement en cas de deadlock.
+    public Result addTransaction(User sender, User receiver, String description, BigDecimal amount, String idempotencyKey) {
+        log.debug("addTransaction,sender="+sender+",receiver="+receiver+",description="+description+",amount="+amount+",idempotencyKey="+idempotencyKey);
         
         // erreurs normalement contrôlées par le required du formulaire et le @Valid...
         if (sender == null || receiver == null) {
@@ -68,43 +167,149 @@ public class TransactionService {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Amount must be greater than zero");
         }
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > 64)) {
+            throw new IllegalArgumentException("Idempotency key must not be blank and at most 64 characters");
+        }
         
         // erreurs de logique, de programmation.
         if (sender.getId().equals(receiver.getId())) {
             throw new TransactionException("Internal error : addTransaction : senderId = receiverId");
         }
-        if (!connectionRepository.existsByUserIdAndFriendId(sender.getId(), receiver.getId())) {
+        // relation trouvée en mémoire dans le cas courant, sinon vérifiée en base (graphe en cours de chargement, relation enregistrée hors de l'application).
+        if (!connectionGraph.contains(sender.getId(), receiver.getId())
+                && !connectionRepository.existsByUserIdAndFriendId(sender.getId(), receiver.getId())) {
             throw new TransactionException("Internal error : addTransaction : connection error : "+sender.getId()+ " "+receiver.getId());
         }   
         
-        // erreurs utilisateur contrôlés par le service.
-        if (sender.getBalance().compareTo(amount) < 0) {
-            return new Result(false, "Votre solde de " +sender.getBalance()+  " € est insufisant"); 
+        // soumission rejouée (double clic, nouvel essai du client) : le résultat du premier transfert est renvoyé.
+        if (idempotencyKey != null) {
+            IdempotentTransferDTO previousTransfer = findPreviousTransfer(sender.getId(), idempotencyKey);
+            if (previousTransfer != null) {
+                log.info("addTransaction,transfert déjà effectué,senderId="+sender.getId()+",idempotencyKey="+idempotencyKey);
+                return replayResult(previousTransfer, receiver.getId(), amount);
+            }
         }
-
-        // sauvegarde de la transaction.
+        
+        Result result;
+        try {
+            result = executeTransfer(sender, receiver, description, amount, idempotencyKey);
+        } catch (DataIntegrityViolationException e) {
+            // la même clé a été enregistrée en parallèle (autre serveur) : l'index unique a refusé le doublon.
+            IdempotentTransferDTO previousTransfer = idempotencyKey == null ? null : findPreviousTransfer(sender.getId(), idempotencyKey);
+            if (previousTransfer == null) {
+                throw e;
+            }
+            return replayResult(previousTransfer, receiver.getId(), amount);
+        }
+        
+        if (result.isSuccess() && idempotencyKey != null) {
+            // succès : nouveau transfert, ou rejeu du même (même bénéficiaire, même montant).
+            idempotentTransfers.put(idempotencyCacheKey(sender.getId(), idempotencyKey), new IdempotentTransferDTO(receiver.getId(), amount));
+        }
+        return result;
+    }
+    
+    // exécute le transfert dans le mode configuré (pipeline ou verrous par compte).
+    private Result executeTransfer(User sender, User receiver, String description, BigDecimal amount, String idempotencyKey) {
+        // mode pipeline : l'unique écrivain sérialise les transferts et les valide par lots, les verrous en mémoire sont inutiles.
+        if (transferPipeline.isEnabled()) {
+            return transferPipeline.execute(() -> transfer(sender, receiver, description, amount, idempotencyKey));
+        }
+        
+        // les verrous en mémoire sont pris avant d'ouvrir la transaction et rendus après le commit.
+        try {
+            return accountLockManager.executeLocked(
+                    () -> transactionExecutor.executeWithRetry(() -> transfer(sender, receiver, description, amount, idempotencyKey)),
+                    sender.getId(), receiver.getId());
+        } catch (AccountLockTimeoutException e) {
+            log.warn("addTransaction : "+e.getMessage());
+            return new Result(false, "Un autre transfert est en cours sur ce compte, veuillez réessayer");
+        }
+    }
+    
+    // transfert déjà effectué avec cette clé : d'abord le cache, puis la base (null si aucun).
+    private IdempotentTransferDTO findPreviousTransfer(Long senderId, String idempotencyKey) {
+        String cacheKey = idempotencyCacheKey(senderId, idempotencyKey);
+        IdempotentTransferDTO previousTransfer = idempotentTransfers.get(cacheKey);
+        if (previousTransfer == null) {
+            previousTransfer = transactionRepository.findIdempotentTransfer(senderId, idempotencyKey);
+            if (previousTransfer == null) {
+                return null;
+            }
+            idempotentTransfers.put(cacheKey, previousTransfer);
+        }
+        return previousTransfer;
+    }
+    
+    // rejeu du même transfert : résultat du premier ; même clé pour un autre transfert : refusé (le client doit utiliser une nouvelle clé).
+    private static Result replayResult(IdempotentTransferDTO previousTransfer, Long receiverId, BigDecimal amount) {
+        if (!previousTransfer.matches(receiverId, amount)) {
+            log.warn("addTransaction,clé d'idempotence réutilisée pour un autre transfert,receiverId="+receiverId+",amount="+amount);
+            return new Result(false, "Ce transfert a déjà été soumis avec un autre bénéficiaire ou un autre montant, veuillez recommencer");
+        }
+        return successResult(previousTransfer.getAmount());
+    }
+    
+    private static String idempotencyCacheKey(Long senderId, String idempotencyKey) {
+        return senderId + ":" + idempotencyKey;
+    }
+    
+    private static Result successResult(BigDecimal amount) {
+        return new Result (true, "La transaction de " + amount + " € a été effectuée");
+    }
+    
+    /**
+     * Moves the money from the sender to the receiver and saves the transaction.
+     * <p>
+     * Must be called inside a database transaction: the debit, the insert and the credit are committed or rolled back together.
+     * </p>
+     *
+     * @param sender      The user sending the money.
+     * @param receiver    The user receiving the money.
+     * @param description Description of the transaction.
+     * @param amount      Transaction amount.
+     * @param idempotencyKey Key chosen by the client for this transfer, or null.
+     * @return A Result object indicating the success or failure of the operation.
+     * @throws TransactionException If the receiver could not be credited.
+     */
+    private Result transfer(User sender, User receiver, String description, BigDecimal amount, String idempotencyKey) {
+        // relu dans la transaction : deux soumissions simultanées de la même clé sont sérialisées par le verrou de l'émetteur.
+        if (idempotencyKey != null) {
+            IdempotentTransferDTO previousTransfer = transactionRepository.findIdempotentTransfer(sender.getId(), idempotencyKey);
+            if (previousTransfer != null) {
+                return replayResult(previousTransfer, receiver.getId(), amount);
+            }
+        }
+        
         Transaction transaction = new Transaction();
         transaction.setSender(sender);
         transaction.setReceiver(receiver);
         transaction.setDescription(description);
         transaction.setAmount(amount);
-
-        // Mise à jour des soldes des utilisateurs.
-        sender.setBalance(sender.getBalance().subtract(amount));
-        receiver.setBalance(receiver.getBalance().add(amount));
-
-        // sauvegarde dans la base de données : d'abord la transaction. 
-        transactionRepository.save(transaction);
-        userRepository.save(sender);
-        // pour tester @Transactional
+        transaction.setIdempotencyKey(idempotencyKey);
+        // pour tester le rollback
 /*
         if (true) { 
-            throw new RuntimeException("Test @Transactional");
+            throw new RuntimeException("Test rollback");
         }
 */        
-        userRepository.save(receiver);
+
+        // débit, sauvegarde de la transaction et crédit selon le stockage des soldes (colonne users.balance ou journal).
+        // erreurs utilisateur contrôlés par le service.
+        if (!balanceService.transfer(transaction)) {
+            BigDecimal balance = balanceService.getBalance(sender.getId());
+            return new Result(false, "Votre solde de " + balance + " € est insufisant"); 
+        }
+        // totaux mensuels dans la même transaction : validés ou annulés avec le transfert.
+        monthlyRollupService.addTransactions(List.of(transaction));
+        // indexée pour la recherche seulement si la transaction est validée.
+        transactionSearchIndex.indexAfterCommit(transaction);
+        // l'historique en cache de l'émetteur et du bénéficiaire est relu après le commit.
+        userHistoryCache.invalidateAfterCommit(transaction);
+        // le bénéficiaire passe en tête des destinataires récents de l'émetteur.
+        recentRecipientsService.recordAfterCommit(transaction);
         
-        return new Result (true, "La transaction de " + amount + " € a été effectuée");
+        return successResult(amount);
     }
     
     /**
@@ -119,51 +324,102 @@ public class TransactionService {
 
 
     /**
-     * Retrieves a user's transaction history and converts it into DTO objects for display.
+     * Retrieves one page of a user's transaction history, sent and received, as DTO objects for display.
+     * <p>
+     * The history is read by keyset pagination on (created_at, id): a page costs two indexed queries of paymybuddy.history.page-size rows,
+     * one on the sent transactions and one on the received ones, merged in time order, whatever the length of the history and the depth of the page.
+     * The rows are projected directly into DTOs by these joined queries, without loading the Transaction and User entities.
+     * The first page is kept in UserHistoryCache until a transfer of the user is committed.
+     * </p>
      *
      * @param userId The user ID.
-     * @return A list of UserTransactionDTOs containing transaction information.
+     * @param cursor The token of the page returned by a previous call, or null for the most recent transactions.
+     * @return The page of UserTransactionDTOs, from newest to oldest, with the token of the next page (null on the last page).
+     * @throws IllegalArgumentException If the cursor is not valid.
      */
-    public List<UserTransactionDTO> getUserTransactionsDTOs(Long userId) {
-        List<Transaction> transactions = getUserTransactions(userId);
-        List<UserTransactionDTO> transactionDTOs = new ArrayList<>();
+    public UserTransactionPageDTO getUserTransactionsPage(Long userId, String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            // la première page est la plus affichée (retour sur la page de transfert) : gardée en cache.
+            return userHistoryCache.get(userId, () -> readUserTransactionsPage(userId, null));
+        }
+        return readUserTransactionsPage(userId, KeysetCursor.decode(cursor));
+    }
 
-        for (Transaction transaction : transactions) {
-            UserTransactionDTO dto = new UserTransactionDTO(
-                transaction.getCreatedAt(),
-                transaction.getReceiver().getName(),
-                transaction.getDescription(),
-                transaction.getAmount()
-            );
+    private UserTransactionPageDTO readUserTransactionsPage(Long userId, KeysetCursor position) {
+        // une ligne de plus que la page pour savoir s'il existe une page suivante, sans requête COUNT.
+        Pageable limit = PageRequest.ofSize(historyPageSize + 1);
+        List<UserTransactionDTO> sent;
+        List<UserTransactionDTO> received;
+        if (position == null) {
+            sent = transactionRepository.findFirstPageBySenderId(userId, limit);
+            received = transactionRepository.findFirstPageByReceiverId(userId, limit);
+        } else {
+            sent = transactionRepository.findPageBySenderIdBefore(userId, position.createdAt(), position.id(), limit);
+            received = transactionRepository.findPageByReceiverIdBefore(userId, position.createdAt(), position.id(), limit);
+        }
+        // les deux pages sont déjà triées par leur index : fusion sans tri, les lignes au-delà de la page sont relues à la page suivante.
+        List<UserTransactionDTO> transactionDTOs = SortedMerge.mergeFirst(List.of(sent, received), HISTORY_ORDER, historyPageSize + 1);
 
-            transactionDTOs.add(dto);
+        String nextCursor = null;
+        if (transactionDTOs.size() > historyPageSize) {
+            transactionDTOs = transactionDTOs.subList(0, historyPageSize);
+            UserTransactionDTO last = transactionDTOs.get(historyPageSize - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
         }
-        return transactionDTOs;
+        return new UserTransactionPageDTO(transactionDTOs, nextCursor);
     }
     
     
     /**
-     * Retrieves all recorded transactions from all users (for administration only).
+     * Searches the transactions of a user, sent and received, by the words of their description.
      *
-     * @return A list of AdminTransactionDTOs containing information for all transactions, sorted from newest to oldest.
+     * @param userId The user ID.
+     * @param query The words searched, each one can be the beginning of a word ("rest" finds "restaurant").
+     * @return The transactions containing all the words, from newest to oldest, at most paymybuddy.search.max-results.
+     * @throws IllegalStateException If the search index is being rebuilt.
      */
-    public List<AdminTransactionDTO> getAllTransactions() {
-        List<Transaction> transactions = transactionRepository.findAllByOrderByCreatedAtDesc();
-        List<AdminTransactionDTO> transactionDTOs = new ArrayList<>();
-
-        for (Transaction transaction : transactions) {
-            AdminTransactionDTO dto = new AdminTransactionDTO(
-                transaction.getCreatedAt(),
-                transaction.getSender().getName(),
-                transaction.getReceiver().getName(),
-                transaction.getDescription(),
-                transaction.getAmount()
-            );
+    public List<UserTransactionDTO> searchUserTransactions(Long userId, String query) {
+        List<Long> ids = transactionSearchIndex.search(userId, query, searchMaxResults);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return transactionRepository.findUserTransactionsByIds(userId, ids);
+    }
+    
+    
+    /**
+     * Retrieves one page of the transactions of all users matching the filters (for administration only).
+     * <p>
+     * The page is read by one query projected into DTOs. The total is counted once per combination of filters and kept in cache
+     * for paymybuddy.admin.transactions.count-cache-seconds, instead of a COUNT on every page load.
+     * </p>
+     *
+     * @param filter The filters, the sort and the page number.
+     * @return The page of AdminTransactionDTOs, with the estimated number of transactions matching the filters.
+     * @throws IllegalArgumentException If the page number is too large (its offset does not fit in an int).
+     */
+    public AdminTransactionPageDTO getAdminTransactions(AdminTransactionFilterDTO filter) {
+        int pageNumber = Math.max(0, filter.getPage());
+        // calcul en long : pageNumber * adminPageSize dépasserait la capacité d'un int (décalage négatif) pour un numéro de page saisi dans l'URL.
+        long offset = (long) pageNumber * adminPageSize;
+        if (offset > Integer.MAX_VALUE - adminPageSize) {
+            throw new IllegalArgumentException("Invalid page : "+pageNumber);
+        }
+        // une ligne de plus que la page pour savoir s'il existe une page suivante.
+        List<AdminTransactionDTO> transactions = transactionRepository.findAdminTransactions(filter, (int) offset, adminPageSize + 1);
+        boolean hasNext = transactions.size() > adminPageSize;
+        if (hasNext) {
+            transactions = transactions.subList(0, adminPageSize);
+        }
 
-            transactionDTOs.add(dto);
+        // la clé ne contient que les filtres : changer de page ou de tri ne recompte pas.
+        List<Object> countKey = Arrays.asList(filter.getSenderEmail(), filter.getReceiverEmail(), filter.getMinAmount(), filter.getMaxAmount(), filter.getFrom(), filter.getTo());
+        Long total = adminCounts.get(countKey);
+        if (total == null) {
+            total = transactionRepository.countAdminTransactions(filter);
+            adminCounts.put(countKey, total);
         }
-        
-        return transactionDTOs;
+        return new AdminTransactionPageDTO(transactions, pageNumber, hasNext, total);
     }
     
 }
@@ -0,0 +1,237 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.cordierlaurent.paymybuddy.exception.TransactionException;
+import com.cordierlaurent.paymybuddy.util.Result;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Optional group-commit pipeline for transfers (paymybuddy.transfer.pipeline.enabled).
+ * <p>
+ * Validated transfers are put in a bounded in-memory queue. A single writer thread drains the queue in micro-batches
+ * (at most max-batch-size transfers, waiting at most max-wait-ms for the batch to fill) and commits each batch in one database transaction,
+ * so the cost of a commit is shared by all the transfers of the batch.
+ * </p>
+ * <p>
+ * Each submitter waits for the completion of its own transfer, so the caller still gets the real outcome, after the commit.
+ * When the queue is full, new transfers are refused (backpressure) instead of piling up in memory.
+ * The batch size, the queue depth and the refused transfers are published as Micrometer metrics (paymybuddy.pipeline.*).
+ * </p>
+ */
+@Service
+@Log4j2
+public class TransferPipeline {
+
+    /**
+     * A transfer waiting in the queue with the future completed after its batch is committed.
+     */
+    private record TransferCommand(Supplier<Result> transfer, CompletableFuture<Result> future) {
+    }
+
+    @Autowired
+    private TransactionExecutor transactionExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${paymybuddy.transfer.pipeline.enabled:false}")
+    private boolean enabled;
+
+    // nombre maximum de transferts en attente (au-delà, ils sont refusés).
+    @Value("${paymybuddy.transfer.pipeline.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // nombre maximum de transferts validés par un même commit.
+    @Value("${paymybuddy.transfer.pipeline.max-batch-size:100}")
+    private int maxBatchSize;
+
+    // attente maximum (en ms) pour compléter un lot après le premier transfert reçu.
+    @Value("${paymybuddy.transfer.pipeline.max-wait-ms:5}")
+    private long maxWaitMs;
+
+    // attente maximum (en ms) d'une place dans la file quand elle est pleine.
+    @Value("${paymybuddy.transfer.pipeline.offer-timeout-ms:100}")
+    private long offerTimeoutMs;
+
+    // attente maximum (en ms) du résultat par l'appelant.
+    @Value("${paymybuddy.transfer.pipeline.result-timeout-ms:10000}")
+    private long resultTimeoutMs;
+
+    private BlockingQueue<TransferCommand> queue;
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    private DistributionSummary batchSizes;
+
+    private Counter rejected;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        batchSizes = DistributionSummary.builder("paymybuddy.pipeline.batch.size")
+                .description("Transfers committed together").register(meterRegistry);
+        rejected = Counter.builder("paymybuddy.pipeline.rejected")
+                .description("Transfers refused because the queue was full").register(meterRegistry);
+        Gauge.builder("paymybuddy.pipeline.queue.depth", queue, BlockingQueue::size)
+                .description("Transfers waiting in the queue").register(meterRegistry);
+
+        running = true;
+        // thread système dédié, même en mode threads virtuels : une seule boucle permanente, rien à gagner avec un thread virtuel.
+        writer = Thread.ofPlatform().name("transfer-pipeline").daemon().start(this::writeLoop);
+        log.info("TransferPipeline,queueCapacity="+queueCapacity+",maxBatchSize="+maxBatchSize+",maxWaitMs="+maxWaitMs);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        // plus de nouveaux transferts, l'écrivain termine ceux qui sont dans la file.
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Indicates whether the transfers must go through the pipeline.
+     *
+     * @return true if the pipeline mode is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Submits a transfer to the pipeline and waits for its outcome.
+     *
+     * @param transfer The unit of work moving the money: it is executed by the writer thread inside the transaction of its batch.
+     * @return The outcome of the transfer once its batch is committed, or a failure if the queue is full.
+     * @throws RuntimeException The exception raised by the transfer itself, if any.
+     */
+    public Result execute(Supplier<Result> transfer) {
+        TransferCommand command = new TransferCommand(transfer, new CompletableFuture<>());
+        try {
+            // contre-pression : si la file reste pleine, le transfert est refusé au lieu d'accumuler des threads en attente.
+            if (!running || !queue.offer(command, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                log.warn("execute,file pleine,depth="+queue.size());
+                return new Result(false, "Trop de transferts en cours, veuillez réessayer");
+            }
+            return command.future().get(resultTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException("Internal error : TransferPipeline : interrupted");
+        } catch (TimeoutException e) {
+            // le transfert est peut-être encore dans la file : on ne peut pas annoncer un échec.
+            log.error("execute,timeout");
+            return new Result(false, "Le transfert est en cours de traitement, vérifiez votre historique avant de recommencer");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new TransactionException("Internal error : TransferPipeline : "+e.getCause());
+        }
+    }
+
+    // boucle de l'écrivain : un lot par transaction tant que l'application tourne ou que la file n'est pas vide.
+    private void writeLoop() {
+        List<TransferCommand> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                TransferCommand first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // ne doit pas arriver (commit gère ses erreurs) mais l'écrivain ne doit jamais s'arrêter.
+                log.error("writeLoop : "+e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // complète le lot jusqu'à maxBatchSize ou jusqu'à l'échéance de maxWaitMs.
+    private void fill(List<TransferCommand> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                return;
+            }
+            TransferCommand next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Commits a batch of transfers in a single database transaction and completes their futures.
+     * <p>
+     * If the transaction of the batch fails, each transfer is replayed in its own transaction, so that one failing transfer does not fail the others.
+     * </p>
+     *
+     * @param batch The transfers to commit.
+     */
+    private void commit(List<TransferCommand> batch) {
+        batchSizes.record(batch.size());
+        List<Result> results;
+        try {
+            results = transactionExecutor.executeWithRetry(() -> {
+                List<Result> batchResults = new ArrayList<>(batch.size());
+                for (TransferCommand command : batch) {
+                    batchResults.add(command.transfer().get());
+                }
+                return batchResults;
+            });
+        } catch (RuntimeException e) {
+            log.warn("commit,lot de "+batch.size()+" annulé, transferts rejoués un par un : "+e.getMessage());
+            for (TransferCommand command : batch) {
+                try {
+                    command.future().complete(transactionExecutor.executeWithRetry(command.transfer()));
+                } catch (RuntimeException transferException) {
+                    command.future().completeExceptionally(transferException);
+                }
+            }
+            return;
+        }
+        // les résultats ne sont rendus qu'après le commit.
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future().complete(results.get(i));
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cordierlaurent.paymybuddy.dto.UserTransactionPageDTO;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.util.ExpiringCache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Cache of the first page of the transaction history of the active users.
+ * <p>
+ * Most displays of the transfer page show an unchanged first page: it is read from the database once, then kept until a transfer
+ * of the user (sent or received) is committed, or at most paymybuddy.history.cache.ttl-seconds.
+ * The hits and misses are counted in the metric paymybuddy.history.cache.
+ * </p>
+ */
+@Service
+@Log4j2
+public class UserHistoryCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // nombre maximum d'utilisateurs gardés (les plus anciens sont évincés) et durée (en s) d'une page.
+    @Value("${paymybuddy.history.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${paymybuddy.history.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private ExpiringCache<Long, UserTransactionPageDTO> pages;
+
+    private Counter hits;
+
+    private Counter misses;
+
+    @PostConstruct
+    void init() {
+        pages = new ExpiringCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+        hits = Counter.builder("paymybuddy.history.cache").tag("result", "hit")
+                .description("First pages of history read from the cache").register(meterRegistry);
+        misses = Counter.builder("paymybuddy.history.cache").tag("result", "miss")
+                .description("First pages of history read from the database").register(meterRegistry);
+        Gauge.builder("paymybuddy.history.cache.size", pages, ExpiringCache::size)
+                .description("Users whose first page of history is cached").register(meterRegistry);
+    }
+
+    /**
+     * Returns the first page of history of a user, from the cache or from the loader.
+     *
+     * @param userId The user ID.
+     * @param loader Reads the first page from the database on a cache miss.
+     * @return The first page of history.
+     */
+    public UserTransactionPageDTO get(Long userId, Supplier<UserTransactionPageDTO> loader) {
+        UserTransactionPageDTO page = pages.get(userId);
+        if (page != null) {
+            hits.increment();
+            return page;
+        }
+        misses.increment();
+
+        /*
+        Une page lue pendant qu'un transfert de l'utilisateur est validé peut être antérieure au commit : elle n'est gardée que si
+        la page de cet utilisateur n'a pas été invalidée pendant la lecture (les transferts des autres utilisateurs ne comptent pas).
+        */
+        long version = pages.version(userId);
+        page = loader.get();
+        pages.putIfUnchanged(userId, page, version);
+        return page;
+    }
+
+    /**
+     * Removes the pages of the sender and the receiver of a transaction once the database transaction saving it is committed
+     * (immediately outside a database transaction).
+     * <p>
+     * Before the commit, the cached pages stay valid: the transaction is not visible yet. After a rollback, nothing changes.
+     * </p>
+     *
+     * @param transaction The saved transaction.
+     */
+    public void invalidateAfterCommit(Transaction transaction) {
+        Long senderId = transaction.getSender().getId();
+        Long receiverId = transaction.getReceiver().getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(senderId, receiverId);
+                }
+            });
+        } else {
+            invalidate(senderId, receiverId);
+        }
+    }
+
+    private void invalidate(Long senderId, Long receiverId) {
+        pages.invalidate(senderId);
+        pages.invalidate(receiverId);
+        log.debug("invalidate,senderId="+senderId+",receiverId="+receiverId);
+    }
+}
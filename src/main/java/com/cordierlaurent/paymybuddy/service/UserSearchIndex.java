@@ -0,0 +1,288 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cordierlaurent.paymybuddy.model.User;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * In-memory prefix index of the names and emails of the users, for the typeahead searches.
+ * <p>
+ * The keys are kept sorted (skip list): the keys starting with a prefix are a range, found in O(log n) then read in order until the limit.
+ * A name is indexed from each of its words ("Jean Dupont" is found by "jean" and by "dup"), accents and case ignored, an email as a whole.
+ * The index is loaded from the database at startup, then updated when a user registers or changes their profile.
+ * Administrators are not indexed.
+ * </p>
+ */
+@Service
+@Log4j2
+public class UserSearchIndex {
+
+    /**
+     * A user found by a search.
+     *
+     * @param id    The user ID.
+     * @param name  The name.
+     * @param email The email.
+     */
+    public record Entry(long id, String name, String email) {
+    }
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}@.]+");
+
+    // sépare la clé de l'id dans les maps triées : plusieurs utilisateurs peuvent avoir la même clé ("jean ...").
+    private static final char ID_SEPARATOR = '\u0000';
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // clé + ID_SEPARATOR + id => id. Lectures sans verrou (ConcurrentSkipListMap).
+    private final ConcurrentSkipListMap<String, Long> names = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentSkipListMap<String, Long> emails = new ConcurrentSkipListMap<>();
+
+    // dernière version indexée de chaque utilisateur (pour retirer ses anciennes clés et vérifier les résultats).
+    private final Map<Long, Entry> users = new ConcurrentHashMap<>();
+
+    // une seule mise à jour à la fois (ReentrantLock plutôt que synchronized pour les threads virtuels).
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // faux pendant le chargement : les résultats seraient incomplets.
+    private volatile boolean ready;
+
+    /**
+     * Indicates whether the index has been loaded and can answer searches.
+     *
+     * @return True once the load at startup is finished.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Loads the index from the users of the database.
+     * <p>
+     * A user updated during the load keeps the version indexed by the update (more recent than the row read).
+     * </p>
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        ready = false;
+        writeLock.lock();
+        try {
+            names.clear();
+            emails.clear();
+            users.clear();
+        } finally {
+            writeLock.unlock();
+        }
+        jdbcTemplate.query("SELECT id, name, email FROM users WHERE role <> 'ADMIN'",
+                rs -> {
+                    put(new Entry(rs.getLong("id"), rs.getString("name"), rs.getString("email")), false);
+                });
+        ready = true;
+        log.info("rebuild,users="+users.size()+",keys="+(names.size() + emails.size())+",ms="+(System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Indexes a user once the database transaction saving them is committed (immediately outside a database transaction).
+     * <p>
+     * Replaces the previous name and email of the user. Administrators are ignored.
+     * </p>
+     *
+     * @param user The saved user (their ID is set).
+     */
+    public void putAfterCommit(User user) {
+        if ("ADMIN".equals(user.getRole())) {
+            return;
+        }
+        Entry entry = new Entry(user.getId(), user.getName(), user.getEmail());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(entry, true);
+                }
+            });
+        } else {
+            put(entry, true);
+        }
+    }
+
+    // replace = false : chargement, la version déjà indexée par une mise à jour est gardée.
+    void put(Entry entry, boolean replace) {
+        writeLock.lock();
+        try {
+            Entry previous = users.get(entry.id());
+            if (previous != null) {
+                if (!replace) {
+                    return;
+                }
+                nameKeys(previous.name()).forEach(key -> names.remove(key + ID_SEPARATOR + previous.id()));
+                emails.remove(emailKey(previous.email()) + ID_SEPARATOR + previous.id());
+            }
+            nameKeys(entry.name()).forEach(key -> names.put(key + ID_SEPARATOR + entry.id(), entry.id()));
+            emails.put(emailKey(entry.email()) + ID_SEPARATOR + entry.id(), entry.id());
+            users.put(entry.id(), entry);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Finds users whose name (one of its words) starts with the query, or whose email starts with it.
+     * <p>
+     * The emails are only searched if the query contains '@': an email is found by someone who already knows its first part,
+     * a few letters are not enough to list the addresses of the users.
+     * </p>
+     *
+     * @param query      The beginning of a name or of an email.
+     * @param excludedId The ID of a user not returned (the user searching).
+     * @param limit      The maximum number of users returned.
+     * @return The users found, names matches first, in alphabetical order of the matching key.
+     * @throws IllegalStateException If the index is being loaded.
+     */
+    public List<Entry> search(String query, long excludedId, int limit) {
+        checkReady();
+        // préfixes distincts : les séparateurs du nom ("_", "-", "+"...) font partie de l'e-mail.
+        String prefix = normalize(query);
+        String emailPrefix = emailKey(query);
+        Map<Long, Entry> found = new LinkedHashMap<>();
+        if (!prefix.isEmpty()) {
+            collect(names, prefix, excludedId, limit, found);
+        }
+        if (emailPrefix.indexOf('@') >= 0) {
+            collect(emails, emailPrefix, excludedId, limit, found);
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    /**
+     * Finds, among some users (the friends of a user), those whose name (one of its words) or email starts with the query.
+     *
+     * @param query The beginning of a name or of an email.
+     * @param ids   The IDs of the users searched, in the order of the results.
+     * @param limit The maximum number of users returned.
+     * @return The users found, in the order of ids.
+     * @throws IllegalStateException If the index is being loaded.
+     */
+    public List<Entry> searchAmong(String query, Collection<Long> ids, int limit) {
+        checkReady();
+        String prefix = normalize(query);
+        String emailPrefix = emailKey(query);
+        List<Entry> found = new ArrayList<>();
+        if (prefix.isEmpty() && emailPrefix.isEmpty()) {
+            return found;
+        }
+        // quelques milliers d'amis au plus : un parcours de la liste est plus simple que les plages des maps triées (tous les utilisateurs).
+        for (Long id : ids) {
+            Entry entry = users.get(id);
+            if (entry != null && ((!prefix.isEmpty() && matchesName(entry, prefix)) || (!emailPrefix.isEmpty() && emailKey(entry.email()).startsWith(emailPrefix)))) {
+                found.add(entry);
+                if (found.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    private void checkReady() {
+        if (!ready) {
+            throw new IllegalStateException("La recherche est en cours d'initialisation, réessayez dans quelques instants");
+        }
+    }
+
+    // plage [prefix, prefix + Character.MAX_VALUE[ de la map triée.
+    private void collect(ConcurrentSkipListMap<String, Long> keys, String prefix, long excludedId, int limit, Map<Long, Entry> found) {
+        for (Long id : keys.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            if (found.size() >= limit) {
+                return;
+            }
+            Entry entry = users.get(id);
+            // la clé peut appartenir à l'ancien nom ou email d'un utilisateur en cours de mise à jour.
+            if (id != excludedId && entry != null && (keys == names ? matchesName(entry, prefix) : emailKey(entry.email()).startsWith(prefix))) {
+                found.putIfAbsent(id, entry);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether a search found a user by their email (and not only by their name): only then may the email be shown.
+     *
+     * @param entry The user found.
+     * @param query The query of the search.
+     * @return True if the query contains '@' and the email starts with it.
+     */
+    public static boolean matchesEmail(Entry entry, String query) {
+        String prefix = emailKey(query);
+        return prefix.indexOf('@') >= 0 && emailKey(entry.email()).startsWith(prefix);
+    }
+
+    private static boolean matchesName(Entry entry, String prefix) {
+        return nameKeys(entry.name()).stream().anyMatch(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Returns the keys of a name: the normalized name from each of its words ("jean pierre dupont", "pierre dupont", "dupont").
+     *
+     * @param name The name.
+     * @return The keys, without duplicates.
+     */
+    static List<String> nameKeys(String name) {
+        String normalized = normalize(name);
+        List<String> keys = new ArrayList<>();
+        if (normalized.isEmpty()) {
+            return keys;
+        }
+        keys.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            String key = normalized.substring(i + 1);
+            if (!keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    // clé d'un e-mail, et préfixe cherché parmi les e-mails : seulement sans espaces autour et en minuscules (normalize() est réservé aux noms).
+    private static String emailKey(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalizes a text for the comparisons: lower case, without accents, words separated by one space.
+     *
+     * @param text The text.
+     * @return The normalized text, empty if text is null.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = ACCENTS.matcher(Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(normalized).replaceAll(" ").trim();
+    }
+}
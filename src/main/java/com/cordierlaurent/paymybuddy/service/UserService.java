@@ -5,9 +5,12 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import com.cordierlaurent.paymybuddy.dto.UserSearchResultDTO;
 import com.cordierlaurent.paymybuddy.exception.UserNotFoundException;
 import com.cordierlaurent.paymybuddy.model.User;
 import com.cordierlaurent.paymybuddy.repository.UserRepository;
@@ -34,6 +37,20 @@ public class UserService {
     @Autowired
     private BCryptPasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    // utilisateurs chargés pour l'authentification (voir CustomUserDetailsService).
+    @Autowired
+    private UserCache userCache;
+
+    // recherche des utilisateurs (saisie semi-automatique) : longueur minimum de la saisie et nombre maximum de résultats.
+    @Value("${paymybuddy.typeahead.min-length:3}")
+    private int typeaheadMinLength;
+
+    @Value("${paymybuddy.typeahead.max-results:10}")
+    private int typeaheadMaxResults;
+
     /**
      * Retrieves the currently authenticated user.
      * <p>
@@ -133,6 +150,7 @@ public class UserService {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         
         userRepository.save(user);
+        userSearchIndex.putAfterCommit(user);
         
         return new Result(true,"Votre inscription a réussi");
     }
@@ -159,6 +177,8 @@ public class UserService {
         }  
         
 
+        // ancien e-mail gardé pour retirer l'utilisateur du cache de l'authentification.
+        String previousEmail = user.getEmail();
         user.setName(userToUpdate.getName());
         // e-mail toujours en minuscule
         user.setEmail(userToUpdate.getEmail().trim().toLowerCase());
@@ -168,6 +188,10 @@ public class UserService {
         }
         
         userRepository.save(user);
+        // e-mail, mot de passe ou rôle modifiés : l'authentification relira l'utilisateur en base.
+        userCache.removeUserFromCache(previousEmail);
+        userCache.removeUserFromCache(user.getEmail());
+        userSearchIndex.putAfterCommit(user);
         return new Result(true, "Votre profil a été mis à jour avec succès");
     }
 
@@ -192,6 +216,38 @@ public class UserService {
         return userRepository.findByEmail(email);
     }
 
+    /**
+     * Searches the users whose name or email starts with a text, to find a user to add as a connection.
+     * <p>
+     * To avoid listing the users, the text must have at least paymybuddy.typeahead.min-length characters,
+     * an email is only found and returned once its part before '@' is typed (a user found by name is returned without email),
+     * and at most paymybuddy.typeahead.max-results users are returned.
+     * </p>
+     *
+     * @param user  The user searching (not returned).
+     * @param query The beginning of a name or of an email.
+     * @return The users found.
+     * @throws IllegalStateException If the search index is being loaded.
+     */
+    public List<UserSearchResultDTO> searchUsers(User user, String query) {
+        if (query == null || query.trim().length() < typeaheadMinLength) {
+            return List.of();
+        }
+        return userSearchIndex.search(query, user.getId(), typeaheadMaxResults).stream()
+                // trouvé par le nom : l'e-mail n'est pas renvoyé (sinon "aaa".."zzz" listerait tous les e-mails).
+                .map(entry -> new UserSearchResultDTO(entry.id(), entry.name(), UserSearchIndex.matchesEmail(entry, query) ? entry.email() : null))
+                .toList();
+    }
+
+    /**
+     * Retrieves the maximum number of results of the typeahead searches.
+     *
+     * @return The value of paymybuddy.typeahead.max-results.
+     */
+    public int getTypeaheadMaxResults() {
+        return typeaheadMaxResults;
+    }
+
     /**
      * Retrieves a user by their ID.
      *
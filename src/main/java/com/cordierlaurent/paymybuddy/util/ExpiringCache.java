@@ -0,0 +1,228 @@
+package com.cordierlaurent.paymybuddy.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Small bounded in-memory cache whose entries expire after a fixed time to live.
+ * <p>
+ * When the cache is full, the oldest entry is evicted. The methods are guarded by a single lock: the cache is meant for small values read on the request path,
+ * not as a general purpose cache. The lock is a ReentrantLock rather than synchronized, which would pin a virtual thread to its carrier while waiting.
+ * </p>
+ * <p>
+ * A value loaded from the database while its key is written or invalidated may be older than the change: it is kept with
+ * putIfUnchanged(key, value, version), only if the key was not changed since version(key) was read before the load.
+ * The versions are counted by stripes of keys: a change of another key of the same stripe only makes a load not cached.
+ * </p>
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public class ExpiringCache<K, V> {
+
+    // une entrée avec sa date d'expiration.
+    private record Entry<V>(V value, long expiresAtNanos) {
+    }
+
+    private final int maxSize;
+    
+    private final long ttlNanos;
+    
+    // ordre d'insertion : la plus ancienne entrée est la première à expirer et la première évincée.
+    private final LinkedHashMap<K, Entry<V>> entries;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // versions des clés par tranche (hashCode de la clé) : mémoire fixe, quel que soit le nombre de clés.
+    private final long[] versions = new long[256];
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxSize Maximum number of entries.
+     * @param ttl     Time to live of an entry.
+     * @param unit    Unit of the time to live.
+     */
+    public ExpiringCache(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize <= 0 || ttl <= 0) {
+            throw new IllegalArgumentException("maxSize and ttl must be greater than zero");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > ExpiringCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the value associated with a key if it has not expired.
+     *
+     * @param key The key.
+     * @return The value, or null if absent or expired.
+     */
+    public V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtNanos() - System.nanoTime() <= 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Associates a value with a key, replacing and renewing a previous entry.
+     *
+     * @param key   The key.
+     * @param value The value (not null).
+     */
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            // une lecture en cours est antérieure à cette valeur : elle ne doit pas la remplacer.
+            versions[stripe(key)]++;
+            store(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the version of a key, read before loading its value.
+     *
+     * @param key The key.
+     * @return The number of writes and invalidations of the key (and of the keys of its stripe).
+     */
+    public long version(K key) {
+        lock.lock();
+        try {
+            return versions[stripe(key)];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Associates a loaded value with a key, unless the key was written or invalidated since its version was read.
+     *
+     * @param key     The key.
+     * @param value   The value (not null).
+     * @param version The value of version(key) read before the load.
+     * @return True if the value was kept.
+     */
+    public boolean putIfUnchanged(K key, V value, long version) {
+        lock.lock();
+        try {
+            if (versions[stripe(key)] != version) {
+                return false;
+            }
+            store(key, value);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void store(K key, V value) {
+        // remove pour replacer la clé en fin d'ordre d'insertion.
+        entries.remove(key);
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        purgeExpired();
+    }
+
+    private int stripe(K key) {
+        return Math.floorMod(key.hashCode(), versions.length);
+    }
+
+    /**
+     * Removes the entry associated with a key.
+     *
+     * @param key The key.
+     */
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            versions[stripe(key)]++;
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all the entries whose key matches a predicate.
+     *
+     * @param predicate The condition on the keys to remove.
+     */
+    public void invalidateIf(Predicate<K> predicate) {
+        lock.lock();
+        try {
+            // les clés concernées ne sont pas connues à l'avance : toutes les lectures en cours sont écartées.
+            incrementVersions();
+            entries.keySet().removeIf(predicate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            incrementVersions();
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries, including the expired entries not yet purged.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void incrementVersions() {
+        for (int i = 0; i < versions.length; i++) {
+            versions[i]++;
+        }
+    }
+
+    // les entrées expirées sont en tête : on s'arrête à la première encore valide.
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAtNanos() - now > 0) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+}
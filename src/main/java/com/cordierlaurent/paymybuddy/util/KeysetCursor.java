@@ -0,0 +1,47 @@
+package com.cordierlaurent.paymybuddy.util;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Position in a list sorted by creation date then ID, used for keyset pagination.
+ * <p>
+ * The next page starts right after this position (WHERE (created_at, id) &lt; (cursor)) instead of skipping rows with an OFFSET,
+ * so reading a page costs the same whatever its depth. The cursor is exchanged with the browser as an opaque URL-safe token.
+ * </p>
+ *
+ * @param createdAt The creation date of the last row read.
+ * @param id        The ID of the last row read, to separate the rows created at the same time.
+ */
+public record KeysetCursor(Timestamp createdAt, Long id) {
+
+    /**
+     * Encodes the cursor as a URL-safe token.
+     *
+     * @return The token.
+     */
+    public String encode() {
+        String value = createdAt.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token produced by encode().
+     *
+     * @param token The token.
+     * @return The cursor.
+     * @throws IllegalArgumentException If the token is not a valid cursor.
+     */
+    public static KeysetCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf(':');
+            return new KeysetCursor(
+                    new Timestamp(Long.parseLong(value.substring(0, separator))),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor : "+token);
+        }
+    }
+}
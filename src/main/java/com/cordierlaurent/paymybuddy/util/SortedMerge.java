@@ -0,0 +1,54 @@
+package com.cordierlaurent.paymybuddy.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merge of lists that are already sorted in the same order.
+ * <p>
+ * The heads of the lists are kept in a heap of k elements: each element read costs log(k), and the merge stops as soon as enough elements are read,
+ * without sorting or even walking the rest of the lists.
+ * </p>
+ */
+public final class SortedMerge {
+
+    // la tête courante d'une liste et la suite de cette liste.
+    private record Head<T>(T value, Iterator<T> rest) {
+    }
+
+    private SortedMerge() {
+    }
+
+    /**
+     * Returns the first elements of the merge of sorted lists.
+     *
+     * @param <T>     The type of the elements.
+     * @param sources The lists, each sorted according to order.
+     * @param order   The order of the lists and of the result.
+     * @param limit   The maximum number of elements returned.
+     * @return The first limit elements (or fewer if the lists are shorter), sorted according to order.
+     */
+    public static <T> List<T> mergeFirst(List<? extends List<T>> sources, Comparator<? super T> order, int limit) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> order.compare(a.value(), b.value()));
+        for (List<T> source : sources) {
+            Iterator<T> iterator = source.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), iterator));
+            }
+        }
+
+        List<T> merged = new ArrayList<>(limit);
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Head<T> head = heads.poll();
+            merged.add(head.value());
+            // la liste dont on vient de prendre la tête revient dans le tas avec son élément suivant.
+            if (head.rest().hasNext()) {
+                heads.add(new Head<>(head.rest().next(), head.rest()));
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,68 @@
+package com.cordierlaurent.paymybuddy.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ExpiringUserCacheTest {
+
+    private ExpiringUserCache userCache;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        userCache = new ExpiringUserCache();
+        // pas de contexte Spring : injection manuelle des champs.
+        ReflectionTestUtils.setField(userCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(userCache, "maxSize", 100);
+        ReflectionTestUtils.setField(userCache, "ttlSeconds", 60L);
+        userCache.init();
+    }
+
+    private UserDetails user(String email, String password) {
+        return User.withUsername(email).password(password).roles("USER").build();
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("paymybuddy.users.cache").tag("result", result).counter().count();
+    }
+
+    @Test
+    @DisplayName("A user is found by normalized email, as a copy whose password is not erased by the authentication")
+    void getUserFromCacheTest() {
+        userCache.putUserInCache(user("user1@test.com", "hash1"));
+
+        UserDetails first = userCache.getUserFromCache(" USER1@test.com ");
+        ((User) first).eraseCredentials();
+
+        assertThat(userCache.getUserFromCache("user1@test.com").getPassword()).isEqualTo("hash1");
+        assertThat(userCache.getUserFromCache("user2@test.com")).isNull();
+        assertThat(count("hit")).isEqualTo(2);
+        assertThat(count("miss")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A user read before their removal is not cached (old password), the other users are")
+    void putAfterRemovalTest() {
+        userCache.putUserInCache(user("user1@test.com", "hash1"));
+        long version1 = userCache.getVersion("user1@test.com");
+        long version2 = userCache.getVersion("user2@test.com");
+
+        // le profil de user1 est modifié pendant la lecture de user1 et de user2 en base.
+        userCache.removeUserFromCache("user1@test.com");
+        userCache.putUserInCache(user("user1@test.com", "hash1"), version1);
+        userCache.putUserInCache(user("user2@test.com", "hash2"), version2);
+
+        assertThat(userCache.getUserFromCache("user1@test.com")).isNull();
+        assertThat(userCache.getUserFromCache("user2@test.com")).isNotNull();
+    }
+}
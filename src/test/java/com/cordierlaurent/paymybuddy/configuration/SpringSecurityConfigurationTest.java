@@ -69,6 +69,13 @@ public class SpringSecurityConfigurationTest {
         mockMvc.perform(get("/admin")).andExpect(redirectedUrlPattern("**/login"));
     }
     
+    @Test
+    @DisplayName("The administration API answers 401 without authentication instead of redirecting to the login path")
+    void pathForAdminApiWithoutAuthenticationIsUnauthorizedTest() throws Exception {
+        // when then
+        mockMvc.perform(post("/admin/api/transfers/batch")).andExpect(status().isUnauthorized());
+    }
+    
     // Ces tests nécessitent une authentification.
     // -------------------------------------------
     @Test
@@ -111,6 +118,14 @@ public class SpringSecurityConfigurationTest {
         mockMvc.perform(get("/profile")).andExpect(status().isForbidden());
     }
    
+    @Test
+    @WithMockUser(username = "user@test.com", roles = "USER")
+    @DisplayName("A user with role USER can't access to the administration API")
+    void pathForAdminApiUserNotAllowedAccessTest() throws Exception {
+        // when then
+        mockMvc.perform(post("/admin/api/transfers/batch")).andExpect(status().isForbidden());
+    }
+   
     @Test
     @WithMockUser(username = "user@test.com", roles = "USER")
     @DisplayName("The logout is redirected to the login path")
@@ -0,0 +1,121 @@
+package com.cordierlaurent.paymybuddy.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.cordierlaurent.paymybuddy.PaymybuddyApplication;
+
+import lombok.extern.log4j.Log4j2;
+
+/*
+Test de charge : débit et mémoire avec le pool de threads de Tomcat, puis avec les threads virtuels (spring.threads.virtual.enabled).
+L'application est démarrée deux fois sur un port libre et reçoit des requêtes HTTP qui lisent la base (/apitest/billing/user/1).
+Désactivé par défaut : pour le lancer
+    mvn verify -Dbenchmark=true -Dit.test=VirtualThreadLoadBenchmarkIT [-Dbenchmark.requests=5000 -Dbenchmark.concurrency=400]
+*/
+@Log4j2
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class VirtualThreadLoadBenchmarkIT {
+
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 5000);
+
+    private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 400);
+
+    // résultat d'une mesure.
+    private record Measure(long requestsPerSecond, long maxHeapMb, int peakPlatformThreads, int errors) {
+    }
+
+    @Test
+    @DisplayName("Throughput and memory of the platform thread pool against virtual threads")
+    void platformAgainstVirtualThreadsBenchmarkTest() throws Exception {
+        // when
+        Measure platform = measure(false);
+        Measure virtual = measure(true);
+
+        // then
+        log.info("platformAgainstVirtualThreadsBenchmarkTest,requests="+REQUESTS+",concurrency="+CONCURRENCY
+                +"\n\tplatform : "+platform
+                +"\n\tvirtual  : "+virtual);
+        assertThat(platform.errors()).isZero();
+        assertThat(virtual.errors()).isZero();
+    }
+
+    private Measure measure(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(PaymybuddyApplication.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        // les logs SQL du profil test fausseraient la mesure.
+                        "spring.jpa.show-sql=false",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=warn",
+                        "logging.level.com.cordierlaurent.paymybuddy=warn")
+                .run();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor()) {
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder().executor(clients).build();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/apitest/billing/user/1")).build();
+
+            // échauffement (JIT, pool de connexions).
+            send(client, request, 500, 50);
+
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            System.gc();
+            threads.resetPeakThreadCount();
+            AtomicLong maxHeap = new AtomicLong();
+            sampler.scheduleAtFixedRate(() -> maxHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max), 0, 20, TimeUnit.MILLISECONDS);
+
+            long start = System.nanoTime();
+            int errors = send(client, request, REQUESTS, CONCURRENCY);
+            long elapsed = System.nanoTime() - start;
+
+            return new Measure(REQUESTS * 1_000_000_000L / elapsed, maxHeap.get() / (1024 * 1024), threads.getPeakThreadCount(), errors);
+        }
+    }
+
+    // envoie count requêtes, au plus concurrency à la fois, et retourne le nombre d'erreurs.
+    private int send(HttpClient client, HttpRequest request, int count, int concurrency) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(count);
+        AtomicInteger errors = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            inFlight.acquire();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, exception) -> {
+                if (exception != null || response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                }
+                inFlight.release();
+                done.countDown();
+            });
+        }
+        done.await();
+        return errors.get();
+    }
+
+}
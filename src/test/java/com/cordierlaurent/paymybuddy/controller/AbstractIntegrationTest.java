@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
@@ -17,7 +18,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 
 import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.repository.BalanceSnapshotRepository;
 import com.cordierlaurent.paymybuddy.repository.ConnectionRepository;
+import com.cordierlaurent.paymybuddy.repository.LedgerEntryRepository;
 import com.cordierlaurent.paymybuddy.repository.TransactionRepository;
 import com.cordierlaurent.paymybuddy.repository.UserRepository;
 
@@ -46,6 +49,16 @@ public abstract class AbstractIntegrationTest {
     @Autowired
     protected TransactionRepository transactionRepository;
 
+    @Autowired
+    protected LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    protected BalanceSnapshotRepository balanceSnapshotRepository;
+
+    // pour les tables sans entité JPA (balance_slots, monthly_rollups).
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
     @Autowired
     protected BCryptPasswordEncoder passwordEncoder;
 
@@ -58,6 +71,10 @@ public abstract class AbstractIntegrationTest {
 //      transactionRepository.deleteAll();
 //      connectionRepository.deleteAll();
 //      userRepository.deleteAll();
+        ledgerEntryRepository.deleteAllInBatch();
+        balanceSnapshotRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM balance_slots");
+        jdbcTemplate.update("DELETE FROM monthly_rollups");
         transactionRepository.deleteAllInBatch();
         connectionRepository.deleteAllInBatch();
         userRepository.deleteAllInBatch();
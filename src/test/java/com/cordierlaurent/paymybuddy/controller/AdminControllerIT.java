@@ -0,0 +1,122 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionDTO;
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionPageDTO;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.model.User;
+
+import lombok.extern.log4j.Log4j2;
+
+// petites pages pour tester la pagination avec peu de transactions, totaux non gardés en cache entre les tests.
+@TestPropertySource(properties = {
+        "paymybuddy.admin.transactions.page-size=2",
+        "paymybuddy.admin.transactions.count-cache-seconds=0" })
+@Log4j2
+public class AdminControllerIT extends AbstractIntegrationTest {
+
+    // 5 transactions : User1 => User2 de 1 à 4 €, puis User2 => User3 de 10 €.
+    private void saveTransactionsTest() {
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78");
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78");
+        User user3 = saveUserTest("User3", "user3@test.com", "user3@78");
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            transactions.add(newTransactionTest(user1, user2, BigDecimal.valueOf(i)));
+        }
+        transactions.add(newTransactionTest(user2, user3, BigDecimal.TEN));
+        transactionRepository.saveAll(transactions);
+    }
+
+    private Transaction newTransactionTest(User sender, User receiver, BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setSender(sender);
+        transaction.setReceiver(receiver);
+        transaction.setDescription("test");
+        transaction.setAmount(amount);
+        return transaction;
+    }
+
+    private AdminTransactionPageDTO getPage(MvcResult mvcResult) {
+        return (AdminTransactionPageDTO) mvcResult.getModelAndView().getModel().get("page");
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("The transactions are displayed by pages, newest first")
+    void displayAdminTransactionsByPagesTest() throws Exception {
+        // given
+        saveTransactionsTest();
+
+        // when
+        MvcResult mvcResult = mockMvc.perform(get("/admin/transactions").param("page", "2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(view().name("admin_transactions"))
+                .andReturn();
+
+        // then : 3ème page => la plus ancienne seule.
+        AdminTransactionPageDTO page = getPage(mvcResult);
+        assertThat(page.getPageNumber()).isEqualTo(2);
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getEstimatedTotal()).isEqualTo(5);
+        assertThat(page.getTransactions()).hasSize(1);
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("The transactions are filtered by sender and amount range and sorted by amount")
+    void displayAdminTransactionsFilteredTest() throws Exception {
+        // given
+        saveTransactionsTest();
+
+        // when
+        MvcResult mvcResult = mockMvc.perform(get("/admin/transactions")
+                .param("senderEmail", "user1@test.com")
+                .param("minAmount", "2")
+                .param("maxAmount", "4")
+                .param("sort", "amount")
+                .param("ascending", "true"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        AdminTransactionPageDTO page = getPage(mvcResult);
+        assertThat(page.getEstimatedTotal()).isEqualTo(3);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.getTransactions()).extracting(AdminTransactionDTO::getAmount)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(BigDecimal.valueOf(2), BigDecimal.valueOf(3));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("A page number whose offset overflows is refused")
+    void displayAdminTransactionsPageOverflowTest() throws Exception {
+        log.debug("displayAdminTransactionsPageOverflowTest");
+        // given
+        saveTransactionsTest();
+
+        // when/then : Integer.MAX_VALUE * 2 dépasserait la capacité d'un int.
+        mockMvc.perform(get("/admin/transactions").param("page", String.valueOf(Integer.MAX_VALUE)))
+            .andDo(print())
+            .andExpect(view().name("myerror"));
+    }
+
+
+}
@@ -1,24 +1,44 @@
 package com.cordierlaurent.paymybuddy.controller;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.nullValue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
+import com.cordierlaurent.paymybuddy.dto.ConnectionImportResultDTO;
 import com.cordierlaurent.paymybuddy.dto.ConnectionRequestDTO;
+import com.cordierlaurent.paymybuddy.dto.FriendDTO;
+import com.cordierlaurent.paymybuddy.dto.FriendSuggestionDTO;
 import com.cordierlaurent.paymybuddy.model.Connection;
 import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.service.UserSearchIndex;
 
 
 import lombok.extern.log4j.Log4j2;
 
 @Log4j2
 public class ConnectionControllerIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
     
     private ResultActions performConnection(ConnectionRequestDTO connectionRequestDTO) throws Exception {
         return mockMvc.perform(post("/connection")
@@ -53,6 +73,27 @@ public class ConnectionControllerIT extends AbstractIntegrationTest {
         assertThat(connectionRepository.existsByUserIdAndFriendId(user1.getId(), user2.getId())).isTrue();
     }
     
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("A new relationship appears in the friends list of the transfer page")
+    @SuppressWarnings("unchecked")
+    void addConnectionRefreshesFriendsListTest() throws Exception {
+        log.debug("addConnectionRefreshesFriendsListTest");
+        // given : liste des amis vide, mise en cache par un 1er affichage.
+        saveUserTest("User1", "user1@test.com", "user1@78");
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78");
+        MvcResult before = mockMvc.perform(get("/transfer")).andExpect(status().isOk()).andReturn();
+        assertThat((List<FriendDTO>) before.getModelAndView().getModel().get("friends")).isEmpty();
+
+        // when
+        assertSuccess(performConnection(new ConnectionRequestDTO("user2@test.com")), "connection");
+        MvcResult after = mockMvc.perform(get("/transfer")).andExpect(status().isOk()).andReturn();
+
+        // then
+        assertThat((List<FriendDTO>) after.getModelAndView().getModel().get("friends"))
+            .containsExactly(new FriendDTO(user2.getId(), "User2"));
+    }
+    
     @Test
     @WithMockUser(username = "user1@test.com", roles = "USER")
     @DisplayName("Adding a relationship from an email that does not exist fails")
@@ -107,4 +148,133 @@ public class ConnectionControllerIT extends AbstractIntegrationTest {
         assertFail(resultActions, "connection");
     }
     
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("Import of a pasted list and a CSV file of emails, with the outcome of each email")
+    @SuppressWarnings("unchecked")
+    void importConnectionsTest() throws Exception {
+        log.debug("importConnectionsTest");
+        // given : User2 déjà ajouté, User3 et User4 à ajouter.
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78");
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78");
+        User user3 = saveUserTest("User3", "user3@test.com", "user3@78");
+        User user4 = saveUserTest("User4", "user4@test.com", "user4@78");
+        connectionRepository.save(new Connection(user1, user2));
+        MockMultipartFile file = new MockMultipartFile("file", "contacts.csv", "text/csv",
+                "\"email\"\n\"user4@test.com\"\n\"User3@test.com\"\n".getBytes(StandardCharsets.UTF_8));
+
+        // when
+        MvcResult mvcResult = mockMvc.perform(multipart("/connection/import")
+                .file(file)
+                .param("emails", " USER3@test.com, user2@test.com ; inconnu@test.com\nuser1@test.com")
+                .with(csrf()))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then : une ligne par email distinct, dans l'ordre.
+        List<ConnectionImportResultDTO> results = (List<ConnectionImportResultDTO>) mvcResult.getModelAndView().getModel().get("importResults");
+        assertThat(results).extracting(ConnectionImportResultDTO::getEmail)
+            .containsExactly("user3@test.com", "user2@test.com", "inconnu@test.com", "user1@test.com", "email", "user4@test.com");
+        assertThat(results).extracting(ConnectionImportResultDTO::isSuccess)
+            .containsExactly(true, false, false, false, false, true);
+        assertThat(connectionRepository.existsByUserIdAndFriendId(user1.getId(), user3.getId())).isTrue();
+        assertThat(connectionRepository.existsByUserIdAndFriendId(user1.getId(), user4.getId())).isTrue();
+        assertThat(connectionRepository.count()).isEqualTo(3);
+    }
+    
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("The friends of friends are suggested, by number of mutual friends")
+    @SuppressWarnings("unchecked")
+    void displaySuggestionsTest() throws Exception {
+        log.debug("displaySuggestionsTest");
+        // given : User1 => User2, User3 ; User2 => User4 ; User3 => User4, User1 (déjà ami => pas suggéré pour User3).
+        saveUserTest("User1", "user1@test.com", "user1@78");
+        saveUserTest("User2", "user2@test.com", "user2@78");
+        saveUserTest("User3", "user3@test.com", "user3@78");
+        User user4 = saveUserTest("User4", "user4@test.com", "user4@78");
+        // ajouts par le formulaire pour passer par le graphe en mémoire (mis à jour à l'ajout).
+        String[][] connections = {
+                {"user1@test.com", "user2@test.com"}, {"user1@test.com", "user3@test.com"},
+                {"user2@test.com", "user4@test.com"}, {"user3@test.com", "user4@test.com"}, {"user3@test.com", "user1@test.com"}};
+        for (String[] connection : connections) {
+            mockMvc.perform(post("/connection").with(user(connection[0]).roles("USER")).with(csrf()).param("email", connection[1]))
+                .andExpect(status().isOk());
+        }
+
+        // when
+        MvcResult mvcResult = mockMvc.perform(get("/connection")).andExpect(status().isOk()).andReturn();
+
+        // then
+        List<FriendSuggestionDTO> suggestions = (List<FriendSuggestionDTO>) mvcResult.getModelAndView().getModel().get("suggestions");
+        assertThat(suggestions).containsExactly(new FriendSuggestionDTO(user4.getId(), "User4", 2));
+        // ajout en un clic par l'id, sans l'e-mail.
+        assertThat(mvcResult.getResponse().getContentAsString()).doesNotContain("user4@test.com");
+    }
+
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("A suggested user is added by their ID")
+    void addConnectionByIdTest() throws Exception {
+        log.debug("addConnectionByIdTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78");
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78");
+
+        // when
+        ResultActions resultActions = mockMvc.perform(post("/connection/friend").with(csrf()).param("friendId", user2.getId().toString()));
+
+        // then
+        assertSuccess(resultActions, "connection");
+        assertThat(connectionRepository.existsByUserIdAndFriendId(user1.getId(), user2.getId())).isTrue();
+        // utilisateur inexistant ou soi-même.
+        assertFail(mockMvc.perform(post("/connection/friend").with(csrf()).param("friendId", "0")), "connection");
+        assertFail(mockMvc.perform(post("/connection/friend").with(csrf()).param("friendId", user1.getId().toString())), "connection");
+    }
+    
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("The typeahead finds users by name from 3 characters, by email from '@', and the friends by any prefix")
+    void typeaheadTest() throws Exception {
+        log.debug("typeaheadTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78");
+        User user2 = saveUserTest("Jean Dupont", "jean.dupont@test.com", "user2@78");
+        saveUserTest("Jeanne Martin", "jeanne@test.com", "user3@78");
+        connectionRepository.save(new Connection(user1, user2));
+        // les utilisateurs des tests précédents ont été supprimés directement en base.
+        userSearchIndex.rebuild();
+
+        // when/then
+        mockMvc.perform(get("/user/api/users").param("q", "jea"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[*].name").value(contains("Jean Dupont", "Jeanne Martin")))
+            // trouvés par le nom : les e-mails ne sont pas renvoyés.
+            .andExpect(jsonPath("$[0].email").value(nullValue()))
+            .andExpect(jsonPath("$[1].email").value(nullValue()));
+        // moins de 3 caractères.
+        mockMvc.perform(get("/user/api/users").param("q", "je"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty());
+        // l'e-mail n'est cherché qu'à partir de '@', et l'utilisateur connecté n'est pas proposé.
+        mockMvc.perform(get("/user/api/users").param("q", "jeanne@"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[*].email").value(contains("jeanne@test.com")));
+        // "jean" correspond au nom de Jeanne Martin mais pas à son e-mail.
+        mockMvc.perform(get("/user/api/users").param("q", "jean.dupont@"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[*].email").value(contains("jean.dupont@test.com")));
+        mockMvc.perform(get("/user/api/users").param("q", "user1@"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty());
+        // parmi les amis : par un mot du nom, sans accent ni majuscule, ou par l'e-mail.
+        mockMvc.perform(get("/user/api/friends").param("q", "DUP"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[*].id").value(contains(user2.getId().intValue())));
+        mockMvc.perform(get("/user/api/friends").param("q", "jeanne"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty());
+    }
+    
 }
@@ -0,0 +1,190 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.cordierlaurent.paymybuddy.model.Connection;
+import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.service.BalanceService;
+import com.cordierlaurent.paymybuddy.service.LedgerCompactor;
+
+import lombok.extern.log4j.Log4j2;
+
+// mode journal : les transferts n'écrivent que des insertions, la colonne balance n'est plus modifiée.
+// sans les verrous en mémoire : comme avec plusieurs serveurs, seul le verrou de la base sérialise les débits.
+@TestPropertySource(properties = {
+        "paymybuddy.balance.mode=ledger",
+        "paymybuddy.transfer.lock.enabled=false",
+        "paymybuddy.ledger.compaction.grace-seconds=1" })
+@Log4j2
+public class LedgerTransferIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private LedgerCompactor ledgerCompactor;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private ResultActions performTransfer(User receiver, String amount) throws Exception {
+        return mockMvc.perform(post("/transfer")
+                .with(csrf())
+                .param("receiverId", receiver.getId().toString())
+                .param("description", "ledger")
+                .param("amount", amount))
+                .andDo(print());
+    }
+
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("A transfer in ledger mode writes a debit and a credit entry")
+    void addTransactionWritesLedgerEntriesTest() throws Exception {
+        log.debug("addTransactionWritesLedgerEntriesTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+
+        // when
+        ResultActions resultActions = performTransfer(user2, "1.25");
+
+        // then
+        assertSuccess(resultActions, "transfer");
+        resultActions.andExpect(model().attribute("balance", BigDecimal.valueOf(8.75).setScale(2)));
+        assertThat(transactionRepository.count()).isEqualTo(1);
+        assertThat(ledgerEntryRepository.count()).isEqualTo(2);
+        // la colonne n'est pas modifiée : le solde vient du journal.
+        assertThat(userRepository.findById(user1.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(10.00));
+        assertThat(balanceService.getBalance(user1.getId())).isEqualByComparingTo(BigDecimal.valueOf(8.75));
+        assertThat(balanceService.getBalance(user2.getId())).isEqualByComparingTo(BigDecimal.valueOf(1.25));
+    }
+
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("A transfer in ledger mode with insufficient balance fails")
+    void addTransactionWithInsufficientLedgerBalanceFailsTest() throws Exception {
+        log.debug("addTransactionWithInsufficientLedgerBalanceFailsTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+        performTransfer(user2, "6.00");
+
+        // when : il ne reste que 4 € dans le journal.
+        ResultActions resultActions = performTransfer(user2, "6.00");
+
+        // then
+        assertFail(resultActions, "transfer");
+        assertThat(transactionRepository.count()).isEqualTo(1);
+        assertThat(balanceService.getBalance(user1.getId())).isEqualByComparingTo(BigDecimal.valueOf(4.00));
+    }
+
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("The compaction rolls the snapshots forward without changing the balances")
+    void compactKeepsBalancesTest() throws Exception {
+        log.debug("compactKeepsBalancesTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+        performTransfer(user2, "3.00");
+        // les écritures doivent être plus anciennes que le délai de grâce (1 s, created_at à la seconde).
+        Thread.sleep(2100);
+
+        // when
+        int snapshots = ledgerCompactor.compact();
+        performTransfer(user2, "2.00");
+
+        // then
+        assertThat(snapshots).isEqualTo(2);
+        assertThat(balanceSnapshotRepository.findById(user1.getId()).get().getLedgerTotal()).isEqualByComparingTo(BigDecimal.valueOf(-3.00));
+        assertThat(balanceService.getBalance(user1.getId())).isEqualByComparingTo(BigDecimal.valueOf(5.00));
+        assertThat(balanceService.getBalance(user2.getId())).isEqualByComparingTo(BigDecimal.valueOf(5.00));
+    }
+
+    @Test
+    @DisplayName("A debit committed while the transfer waits for the sender lock is counted (no overdraft)")
+    void concurrentDebitIsCountedTest() throws Exception {
+        log.debug("concurrentDebitIsCountedTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+
+        // 2ème connexion : un autre transfert de 8 € (autre serveur) verrouille l'émetteur et écrit son débit, sans valider.
+        try (java.sql.Connection other = dataSource.getConnection()) {
+            other.setAutoCommit(false);
+            try (PreparedStatement lock = other.prepareStatement("SELECT id FROM users WHERE id = ? FOR UPDATE")) {
+                lock.setLong(1, user1.getId());
+                lock.executeQuery().close();
+            }
+            // id hors des blocs réservés par Hibernate.
+            long transactionId = 1_000_000_000L;
+            try (PreparedStatement insert = other.prepareStatement(
+                    "INSERT INTO transactions (id, sender_id, receiver_id, description, amount) VALUES (?, ?, ?, 'autre serveur', 8.00)")) {
+                insert.setLong(1, transactionId);
+                insert.setLong(2, user1.getId());
+                insert.setLong(3, user2.getId());
+                insert.executeUpdate();
+            }
+            try (PreparedStatement insert = other.prepareStatement(
+                    "INSERT INTO ledger_entries (id, user_id, transaction_id, amount) VALUES (?, ?, ?, -8.00), (?, ?, ?, 8.00)")) {
+                insert.setLong(1, transactionId);
+                insert.setLong(2, user1.getId());
+                insert.setLong(3, transactionId);
+                insert.setLong(4, transactionId + 1);
+                insert.setLong(5, user2.getId());
+                insert.setLong(6, transactionId);
+                insert.executeUpdate();
+            }
+
+            // when : le transfert de 8 € lit sa clé d'idempotence (1ère lecture de sa transaction) puis attend le verrou de l'émetteur.
+            CompletableFuture<MvcResult> transfer = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return mockMvc.perform(post("/transfer")
+                            .with(user("user1@test.com").roles("USER"))
+                            .with(csrf())
+                            .param("receiverId", user2.getId().toString())
+                            .param("description", "ledger")
+                            .param("amount", "8.00")
+                            .param("idempotencyKey", "concurrent-debit"))
+                        .andReturn();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(1000);
+            assertThat(transfer).isNotDone();
+            other.commit();
+
+            // then : il ne restait que 2 €, le transfert est refusé.
+            MvcResult mvcResult = transfer.get(30, TimeUnit.SECONDS);
+            assertThat(mvcResult.getModelAndView().getModel()).containsKey("errorMessage");
+        }
+        assertThat(transactionRepository.count()).isEqualTo(1);
+        assertThat(balanceService.getBalance(user1.getId())).isEqualByComparingTo(BigDecimal.valueOf(2.00));
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.cordierlaurent.paymybuddy.dto.TransferItemRequestDTO;
+import com.cordierlaurent.paymybuddy.model.Connection;
+import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.service.MonthlyRollupService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+public class MonthlyRollupIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MonthlyRollupService monthlyRollupService;
+
+    private User user1;
+    private User user2;
+
+    // User1 => User2 : 2 transferts (3 € + 4 €), User2 => User1 : 1 transfert de 2 €.
+    private void saveTransfersTest() throws Exception {
+        user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+        connectionRepository.save(new Connection(user2, user1));
+        List<TransferItemRequestDTO> transfers = List.of(
+                new TransferItemRequestDTO(user1.getId(), user2.getId(), "ok", BigDecimal.valueOf(3.00)),
+                new TransferItemRequestDTO(user1.getId(), user2.getId(), "ok", BigDecimal.valueOf(4.00)),
+                new TransferItemRequestDTO(user2.getId(), user1.getId(), "ok", BigDecimal.valueOf(2.00)));
+        mockMvc.perform(post("/admin/api/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transfers)))
+                .andExpect(status().isOk());
+    }
+
+    private ResultActions performGetTotals(User user) throws Exception {
+        String month = monthlyRollupService.currentMonth().toString();
+        return mockMvc.perform(get("/admin/api/rollups/users/" + user.getId())
+                .param("from", month)
+                .param("to", month))
+                .andDo(print());
+    }
+
+    private void assertTotalsUser1(ResultActions resultActions) throws Exception {
+        resultActions.andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].month").value(monthlyRollupService.currentMonth().toString()))
+            .andExpect(jsonPath("$[0].counterpartName").value("User2"))
+            .andExpect(jsonPath("$[0].sentCount").value(2))
+            .andExpect(jsonPath("$[0].sentAmount").value(7.00))
+            .andExpect(jsonPath("$[0].receivedCount").value(1))
+            .andExpect(jsonPath("$[0].receivedAmount").value(2.00));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("The monthly totals are updated by the transfers")
+    void monthlyTotalsUpdatedByTransfersTest() throws Exception {
+        log.debug("monthlyTotalsUpdatedByTransfersTest");
+        // given
+        saveTransfersTest();
+
+        // when
+        ResultActions resultActions = performGetTotals(user1);
+
+        // then
+        assertTotalsUser1(resultActions);
+        performGetTotals(user2)
+            .andExpect(jsonPath("$[0].counterpartName").value("User1"))
+            .andExpect(jsonPath("$[0].sentCount").value(1))
+            .andExpect(jsonPath("$[0].receivedCount").value(2));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("The backfill rebuilds the same monthly totals from the transactions")
+    void backfillTest() throws Exception {
+        log.debug("backfillTest");
+        // given : totaux perdus (données antérieures aux totaux mensuels).
+        saveTransfersTest();
+        jdbcTemplate.update("DELETE FROM monthly_rollups");
+
+        // when : 2 fois, le résultat ne doit pas être compté en double.
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/admin/api/rollups/backfill"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.months").value(1));
+        }
+
+        // then
+        assertTotalsUser1(performGetTotals(user1));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("A transaction is counted in its month of the time zone of the totals, whatever the time zone of the MySQL session")
+    void backfillMonthTimeZoneTest() throws Exception {
+        log.debug("backfillMonthTimeZoneTest");
+        // given : 1er février 2026 à 0h30 à Paris = 31 janvier à 23h30 UTC (instant passé en secondes, indépendant du fuseau de la session).
+        user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.ZERO);
+        user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        long createdAt = LocalDateTime.of(2026, 2, 1, 0, 30).atZone(ZoneId.of("Europe/Paris")).toEpochSecond();
+        jdbcTemplate.update("INSERT INTO transactions (id, sender_id, receiver_id, description, amount, created_at) "
+                + "VALUES (1000000000, ?, ?, 'minuit', 5.00, FROM_UNIXTIME(?))", user1.getId(), user2.getId(), createdAt);
+
+        // when
+        mockMvc.perform(post("/admin/api/rollups/backfill").param("from", "2026-01").param("to", "2026-02"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.months").value(2));
+
+        // then
+        mockMvc.perform(get("/admin/api/rollups/users/" + user1.getId()).param("from", "2026-01").param("to", "2026-02"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].month").value("2026-02"))
+            .andExpect(jsonPath("$[0].sentCount").value(1));
+    }
+
+}
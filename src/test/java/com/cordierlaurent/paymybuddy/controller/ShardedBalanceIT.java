@@ -0,0 +1,86 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.cordierlaurent.paymybuddy.model.Connection;
+import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.service.BalanceService;
+
+import lombok.extern.log4j.Log4j2;
+
+// mode sharded : les crédits d'un compte découpé tombent sur ses slots.
+@TestPropertySource(properties = {
+        "paymybuddy.balance.mode=sharded",
+        "paymybuddy.balance.sharding.slots=4" })
+@Log4j2
+public class ShardedBalanceIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private BalanceService balanceService;
+
+    private ResultActions performTransfer(String senderEmail, User receiver, String amount) throws Exception {
+        return mockMvc.perform(post("/transfer")
+                .with(csrf())
+                .with(user(senderEmail).roles("USER"))
+                .param("receiverId", receiver.getId().toString())
+                .param("description", "sharded")
+                .param("amount", amount))
+                .andDo(print());
+    }
+
+    private BigDecimal slotsTotal(User user) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(balance), 0) FROM balance_slots WHERE user_id = ?", BigDecimal.class, user.getId());
+    }
+
+    @Test
+    @DisplayName("Credits to a hot account land on its slots and its debits gather from them")
+    void transferWithHotAccountTest() throws Exception {
+        log.debug("transferWithHotAccountTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User pot = saveUserTest("Pot", "pot@test.com", "pot@78", BigDecimal.valueOf(1.00));
+        connectionRepository.save(new Connection(user1, pot));
+        connectionRepository.save(new Connection(pot, user1));
+        mockMvc.perform(post("/admin/api/accounts/" + pot.getId() + "/balance-slots")
+                .with(user("admin@test.com").roles("ADMIN")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.slots").value(4));
+
+        // when : 3 crédits de 2 € vers la cagnotte.
+        for (int i = 0; i < 3; i++) {
+            assertSuccess(performTransfer("user1@test.com", pot, "2.00"), "transfer");
+        }
+
+        // then : la ligne users de la cagnotte n'a pas bougé, les 6 € sont dans ses slots.
+        assertThat(userRepository.findById(pot.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(1.00));
+        assertThat(slotsTotal(pot)).isEqualByComparingTo(BigDecimal.valueOf(6.00));
+        assertThat(balanceService.getBalance(pot.getId())).isEqualByComparingTo(BigDecimal.valueOf(7.00));
+        assertThat(balanceService.getBalance(user1.getId())).isEqualByComparingTo(BigDecimal.valueOf(4.00));
+
+        // when : 5 € depuis la cagnotte => 1 € de la ligne users + 4 € des slots.
+        assertSuccess(performTransfer("pot@test.com", user1, "5.00"), "transfer");
+        // when : plus que 2 € => refusé.
+        assertFail(performTransfer("pot@test.com", user1, "3.00"), "transfer");
+
+        // then
+        assertThat(userRepository.findById(pot.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(slotsTotal(pot)).isEqualByComparingTo(BigDecimal.valueOf(2.00));
+        assertThat(balanceService.getBalance(user1.getId())).isEqualByComparingTo(BigDecimal.valueOf(9.00));
+        assertThat(transactionRepository.count()).isEqualTo(4);
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.model.User;
+
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+public class TransactionExportIT extends AbstractIntegrationTest {
+
+    private User user1;
+    private User user2;
+    private User user3;
+
+    private void saveTransactionsTest() {
+        user1 = saveUserTest("User1", "user1@test.com", "user1@78");
+        user2 = saveUserTest("User2", "user2@test.com", "user2@78");
+        user3 = saveUserTest("User3", "user3@test.com", "user3@78");
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            transactions.add(newTransactionTest(user1, user2, "repas \"midi\", " + i));
+        }
+        transactions.add(newTransactionTest(user2, user3, "cinéma"));
+        transactionRepository.saveAll(transactions);
+    }
+
+    private Transaction newTransactionTest(User sender, User receiver, String description) {
+        Transaction transaction = new Transaction();
+        transaction.setSender(sender);
+        transaction.setReceiver(receiver);
+        transaction.setDescription(description);
+        transaction.setAmount(BigDecimal.valueOf(2.50));
+        return transaction;
+    }
+
+    // la réponse est écrite dans un autre thread : attendre la fin de l'écriture avant de lire le contenu.
+    private byte[] performExport(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvcResult.getAsyncResult(10000);
+        assertThat(mvcResult.getResponse().getStatus()).isEqualTo(200);
+        return mvcResult.getResponse().getContentAsByteArray();
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("Export of all transactions as CSV")
+    void exportCsvTest() throws Exception {
+        log.debug("exportCsvTest");
+        // given
+        saveTransactionsTest();
+
+        // when
+        byte[] content = performExport(get("/admin/transactions/export").param("format", "csv"));
+
+        // then : en-tête + 4 lignes, guillemets doublés dans les champs.
+        String csv = new String(content, StandardCharsets.UTF_8);
+        log.debug("exportCsvTest,csv="+csv);
+        String[] lines = csv.split("\r\n");
+        assertThat(lines).hasSize(5);
+        assertThat(lines[0]).isEqualTo("id,createdAt,sender,receiver,description,amount");
+        assertThat(lines[1]).endsWith(",\"User1\",\"User2\",\"repas \"\"midi\"\", 0\",2.50");
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("Export of the transactions of a user for a date range as gzipped NDJSON")
+    void exportNdjsonGzipWithFiltersTest() throws Exception {
+        log.debug("exportNdjsonGzipWithFiltersTest");
+        // given
+        saveTransactionsTest();
+
+        // when
+        byte[] content = performExport(get("/admin/transactions/export")
+                .param("format", "ndjson")
+                .param("gzip", "true")
+                .param("userId", user3.getId().toString())
+                .param("from", LocalDate.now().minusDays(1).toString())
+                .param("to", LocalDate.now().plusDays(1).toString()));
+
+        // then : une seule transaction concerne User3.
+        String ndjson;
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            ndjson = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        log.debug("exportNdjsonGzipWithFiltersTest,ndjson="+ndjson);
+        assertThat(ndjson.split("\n")).hasSize(1);
+        assertThat(ndjson).contains("\"sender\":\"User2\"", "\"receiver\":\"User3\"", "\"description\":\"cinéma\"").endsWith("}\n");
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("Export of a date range without transactions")
+    void exportEmptyRangeTest() throws Exception {
+        // given
+        saveTransactionsTest();
+
+        // when
+        byte[] content = performExport(get("/admin/transactions/export").param("to", "2000-01-01"));
+
+        // then : en-tête seul.
+        assertThat(new String(content, StandardCharsets.UTF_8)).isEqualTo("id,createdAt,sender,receiver,description,amount\r\n");
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("Export with an unknown format displays the error page")
+    void exportUnknownFormatTest() throws Exception {
+        mockMvc.perform(get("/admin/transactions/export").param("format", "xml"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("myerror"));
+    }
+
+}
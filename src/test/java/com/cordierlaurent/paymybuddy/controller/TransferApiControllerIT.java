@@ -0,0 +1,80 @@
+package com.cordierlaurent.paymybuddy.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.cordierlaurent.paymybuddy.dto.TransferItemRequestDTO;
+import com.cordierlaurent.paymybuddy.model.Connection;
+import com.cordierlaurent.paymybuddy.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.log4j.Log4j2;
+
+@Log4j2
+public class TransferApiControllerIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ResultActions performBatch(List<TransferItemRequestDTO> transfers) throws Exception {
+        return mockMvc.perform(post("/admin/api/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transfers)))
+                // Affiche la requête et la réponse.
+                .andDo(print());
+    }
+
+    @Test
+    @WithMockUser(username = "admin@test.com", roles = "ADMIN")
+    @DisplayName("A batch applies the valid transfers and reports the refused ones")
+    void addTransfersSuccessAndFailTest() throws Exception {
+        log.debug("addTransfersSuccessAndFailTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        User user3 = saveUserTest("User3", "user3@test.com", "user3@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+        connectionRepository.save(new Connection(user1, user3));
+        connectionRepository.save(new Connection(user2, user3));
+        List<TransferItemRequestDTO> transfers = List.of(
+                new TransferItemRequestDTO(user1.getId(), user2.getId(), "ok", BigDecimal.valueOf(6.00)),
+                // solde restant de 4 € => refusé.
+                new TransferItemRequestDTO(user1.getId(), user3.getId(), "solde insuffisant", BigDecimal.valueOf(6.00)),
+                // user2 dépense l'argent reçu dans le même lot.
+                new TransferItemRequestDTO(user2.getId(), user3.getId(), "ok", BigDecimal.valueOf(3.00)),
+                // pas de connexion de user3 vers user1.
+                new TransferItemRequestDTO(user3.getId(), user1.getId(), "pas une relation", BigDecimal.valueOf(1.00)),
+                new TransferItemRequestDTO(user1.getId(), user1.getId(), "à soi-même", BigDecimal.valueOf(1.00)));
+
+        // when
+        ResultActions resultActions = performBatch(transfers);
+
+        // then
+        resultActions.andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(5))
+            .andExpect(jsonPath("$[0].success").value(true))
+            .andExpect(jsonPath("$[1].success").value(false))
+            .andExpect(jsonPath("$[2].success").value(true))
+            .andExpect(jsonPath("$[3].success").value(false))
+            .andExpect(jsonPath("$[4].success").value(false));
+
+        assertThat(userRepository.findById(user1.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(4.00));
+        assertThat(userRepository.findById(user2.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(3.00));
+        assertThat(userRepository.findById(user3.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(3.00));
+        assertThat(transactionRepository.count()).isEqualTo(2);
+    }
+
+}
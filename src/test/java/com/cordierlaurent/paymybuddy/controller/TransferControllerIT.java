@@ -2,8 +2,11 @@ package com.cordierlaurent.paymybuddy.controller;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
@@ -11,23 +14,45 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.hamcrest.Matchers.containsString;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
+import com.cordierlaurent.paymybuddy.dto.FriendDTO;
 import com.cordierlaurent.paymybuddy.dto.TransactionRequestDTO;
+import com.cordierlaurent.paymybuddy.dto.UserTransactionDTO;
 import com.cordierlaurent.paymybuddy.model.Connection;
 import com.cordierlaurent.paymybuddy.model.Transaction;
 import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.service.TransactionService;
+import com.cordierlaurent.paymybuddy.service.UserSearchIndex;
+import com.cordierlaurent.paymybuddy.util.Result;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.log4j.Log4j2;
 
 @Log4j2
 public class TransferControllerIT extends AbstractIntegrationTest {
 
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
     private ResultActions performTransfer(TransactionRequestDTO transactionRequestDTO) throws Exception {
         return mockMvc.perform(post("/transfer")
                 // Spring Security active la protection CSRF (Cross-Site Request Forgery) par défaut pour les requêtes POST, PUT, DELETE (jeton unique pour chaque session)
@@ -38,6 +63,17 @@ public class TransferControllerIT extends AbstractIntegrationTest {
                 // Affiche la requête et la réponse.
                 .andDo(print()); 
     }
+
+    // transfert avec une clé d'idempotence.
+    private ResultActions performTransfer(User receiver, String amount, String idempotencyKey) throws Exception {
+        return mockMvc.perform(post("/transfer")
+                .with(csrf())
+                .param("receiverId", receiver.getId().toString())
+                .param("description", "clé réutilisée")
+                .param("amount", amount)
+                .param("idempotencyKey", idempotencyKey))
+                .andDo(print());
+    }
     
     @Test
     @WithMockUser(username = "user1@test.com", roles = "USER")
@@ -173,5 +209,240 @@ public class TransferControllerIT extends AbstractIntegrationTest {
         assertThat(transactionRepository.count()).isZero();
     }
     
-}
+    @Test
+    @DisplayName("Concurrent transfers from the same account never overdraw it")
+    void addTransactionConcurrentlyNeverOverdrawTest() throws Exception {
+        log.debug("addTransactionConcurrentlyNeverOverdrawTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+        int transfers = 10;
+        ExecutorService executorService = Executors.newFixedThreadPool(transfers);
+
+        // when : 10 transferts de 2 € en parallèle pour un solde de 10 € => seuls 5 peuvent passer.
+        List<Future<ResultActions>> futures = new ArrayList<>();
+        for (int i = 0; i < transfers; i++) {
+            // @WithMockUser ne suit pas les threads => l'utilisateur est passé à chaque requête.
+            futures.add(executorService.submit(() -> mockMvc.perform(post("/transfer")
+                    .with(csrf())
+                    .with(user("user1@test.com").roles("USER"))
+                    .param("receiverId", user2.getId().toString())
+                    .param("description", "concurrent")
+                    .param("amount", "2.00"))));
+        }
+        for (Future<ResultActions> future : futures) {
+            future.get().andExpect(status().isOk());
+        }
+        executorService.shutdown();
+
+        // then
+        assertThat(userRepository.findById(user1.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(userRepository.findById(user2.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(10.00));
+        assertThat(transactionRepository.count()).isEqualTo(5);
+    }
+    
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("A transfer submitted twice with the same idempotency key is made once")
+    void addTransactionReplayedWithSameIdempotencyKeyTest() throws Exception {
+        log.debug("addTransactionReplayedWithSameIdempotencyKeyTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+
+        // when : double clic sur "Payer" => même formulaire, même clé.
+        for (int i = 0; i < 2; i++) {
+            ResultActions resultActions = mockMvc.perform(post("/transfer")
+                    .with(csrf())
+                    .param("receiverId", user2.getId().toString())
+                    .param("description", "double clic")
+                    .param("amount", "4.00")
+                    .param("idempotencyKey", "7f3c2a9e-double-submit"))
+                    .andDo(print());
+            // then : le rejeu renvoie le résultat du premier transfert.
+            assertSuccess(resultActions, "transfer");
+        }
+
+        // then
+        assertThat(userRepository.findById(user1.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(6.00));
+        assertThat(userRepository.findById(user2.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(4.00));
+        assertThat(transactionRepository.count()).isEqualTo(1);
+        assertThat(transactionRepository.findAll().get(0).getIdempotencyKey()).isEqualTo("7f3c2a9e-double-submit");
+    }
+    
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("An idempotency key reused for another receiver or another amount is refused")
+    void addTransactionReusedIdempotencyKeyTest() throws Exception {
+        log.debug("addTransactionReusedIdempotencyKeyTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        User user3 = saveUserTest("User3", "user3@test.com", "user3@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+        connectionRepository.save(new Connection(user1, user3));
+        assertSuccess(performTransfer(user2, "4.00", "5d1e8b20-reused"), "transfer");
+
+        // when/then : même clé, autre montant puis autre bénéficiaire.
+        assertFail(performTransfer(user2, "5.00", "5d1e8b20-reused"), "transfer");
+        assertFail(performTransfer(user3, "4.00", "5d1e8b20-reused"), "transfer");
+        // le rejeu du même transfert (montant écrit autrement) reste un succès.
+        assertSuccess(performTransfer(user2, "4", "5d1e8b20-reused"), "transfer");
+
+        // then : seul le premier transfert a été effectué.
+        assertThat(userRepository.findById(user1.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(6.00));
+        assertThat(userRepository.findById(user2.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(4.00));
+        assertThat(userRepository.findById(user3.getId()).get().getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(transactionRepository.count()).isEqualTo(1);
+    }
+    
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("A friend out of the recent recipients stays selectable after an error, and is found without javascript")
+    @SuppressWarnings("unchecked")
+    void selectFriendOutOfRecipientsTest() throws Exception {
+        log.debug("selectFriendOutOfRecipientsTest");
+        // given : 11 amis, la liste n'affiche que les 10 premiers par nom (paymybuddy.recipients.max-results).
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.ONE);
+        User last = null;
+        for (int i = 1; i <= 11; i++) {
+            last = saveUserTest(String.format("Friend%02d", i), "friend" + i + "@test.com", "friend@78", BigDecimal.ZERO);
+            connectionRepository.save(new Connection(user1, last));
+        }
+        // les utilisateurs des tests précédents ont été supprimés directement en base.
+        userSearchIndex.rebuild();
+        FriendDTO friend11 = new FriendDTO(last.getId(), "Friend11");
+
+        // when : transfert refusé (solde insuffisant) vers Friend11.
+        MvcResult result = mockMvc.perform(post("/transfer")
+                .with(csrf())
+                .param("receiverId", last.getId().toString())
+                .param("description", "hors liste")
+                .param("amount", "5.00"))
+                .andExpect(model().attributeExists("errorMessage"))
+                .andReturn();
+
+        // then : Friend11 reste dans la liste (et sélectionné par th:field).
+        List<FriendDTO> friends = (List<FriendDTO>) result.getModelAndView().getModel().get("friends");
+        assertThat(friends).hasSize(11).contains(friend11);
+
+        // when/then : recherche sans javascript.
+        MvcResult search = mockMvc.perform(get("/transfer").param("friend", "friend11"))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertThat((List<FriendDTO>) search.getModelAndView().getModel().get("friends")).containsExactly(friend11);
+        assertThat(((TransactionRequestDTO) search.getModelAndView().getModel().get("transactionRequest")).getReceiverId()).isEqualTo(last.getId());
+    }
+    
+    @Test
+    @WithMockUser(username = "user1@test.com", roles = "USER")
+    @DisplayName("The history is displayed by pages and the next pages are loaded with the cursor")
+    @SuppressWarnings("unchecked")
+    void displayHistoryByPagesTest() throws Exception {
+        log.debug("displayHistoryByPagesTest");
+        // given : 25 transactions insérées dans la même seconde => le curseur doit départager par id.
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setSender(user1);
+            transaction.setReceiver(user2);
+            transaction.setDescription("transaction " + i);
+            transaction.setAmount(BigDecimal.ONE);
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+
+        // when : première page.
+        MvcResult firstPage = mockMvc.perform(get("/transfer"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("transfer"))
+                // adresses du script "Afficher plus" construites par Thymeleaf (chemin de contexte compris).
+                .andExpect(content().string(containsString("data-history-url=\"/transfer/history\"")))
+                .andReturn();
+
+        // then
+        List<UserTransactionDTO> firstRows = (List<UserTransactionDTO>) firstPage.getModelAndView().getModel().get("transactions");
+        String nextCursor = (String) firstPage.getModelAndView().getModel().get("nextCursor");
+        assertThat(firstRows).hasSize(20);
+        assertThat(nextCursor).isNotNull();
+
+        // when : page suivante demandée par le bouton "Afficher plus".
+        MvcResult secondPage = mockMvc.perform(get("/transfer/history").param("cursor", nextCursor))
+                .andExpect(status().isOk())
+                .andExpect(view().name("transfer :: historyRows"))
+                // marque attendue par le script avant d'ajouter les lignes.
+                .andExpect(content().string(containsString("data-history-rows")))
+                .andReturn();
+
+        // then : les 5 dernières, sans page suivante.
+        List<UserTransactionDTO> secondRows = (List<UserTransactionDTO>) secondPage.getModelAndView().getModel().get("transactions");
+        assertThat(secondRows).hasSize(5);
+        assertThat(secondPage.getResponse().getHeader("X-Next-Cursor")).isNull();
+        assertThat(firstRows).doesNotContainAnyElementsOf(secondRows);
+    }
+    
+    @Test
+    @WithMockUser(username = "user2@test.com", roles = "USER")
+    @DisplayName("The first page of history is cached until a transfer of the user is committed")
+    @SuppressWarnings("unchecked")
+    void displayHistoryCachedUntilTransferTest() throws Exception {
+        log.debug("displayHistoryCachedUntilTransferTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+        double hits = meterRegistry.get("paymybuddy.history.cache").tag("result", "hit").counter().count();
+
+        // when : 2 affichages sans transfert => le 2ème vient du cache.
+        mockMvc.perform(get("/transfer")).andExpect(status().isOk());
+        MvcResult cachedPage = mockMvc.perform(get("/transfer")).andExpect(status().isOk()).andReturn();
+
+        // then
+        assertThat(meterRegistry.get("paymybuddy.history.cache").tag("result", "hit").counter().count()).isEqualTo(hits + 1);
+        assertThat((List<?>) cachedPage.getModelAndView().getModel().get("transactions")).isEmpty();
+
+        // when : transfert reçu par l'utilisateur connecté.
+        Result result = transactionService.addTransaction(user1, user2, "test", BigDecimal.valueOf(5.00));
+        assertThat(result.isSuccess()).isTrue();
+        MvcResult updatedPage = mockMvc.perform(get("/transfer")).andExpect(status().isOk()).andReturn();
+
+        // then : le cache du bénéficiaire a été vidé au commit.
+        List<UserTransactionDTO> transactions = (List<UserTransactionDTO>) updatedPage.getModelAndView().getModel().get("transactions");
+        assertThat(transactions).hasSize(1);
+        assertThat(transactions.get(0).isReceived()).isTrue();
+    }
+    
+    @Test
+    @WithMockUser(username = "user2@test.com", roles = "USER")
+    @DisplayName("A committed transfer is found by the words of its description, by the sender and the receiver")
+    @SuppressWarnings("unchecked")
+    void searchTransactionsTest() throws Exception {
+        log.debug("searchTransactionsTest");
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78", BigDecimal.valueOf(10.00));
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78", BigDecimal.ZERO);
+        connectionRepository.save(new Connection(user1, user2));
+        Result result = transactionService.addTransaction(user1, user2, "Loyer de janvier", BigDecimal.valueOf(5.00));
+        assertThat(result.isSuccess()).isTrue();
 
+        // when : recherche par le bénéficiaire (utilisateur connecté), début de mot et sans accent.
+        MvcResult found = mockMvc.perform(get("/transfer").param("q", "loy JANV"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MvcResult notFound = mockMvc.perform(get("/transfer").param("q", "loyer restaurant"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        List<UserTransactionDTO> transactions = (List<UserTransactionDTO>) found.getModelAndView().getModel().get("transactions");
+        assertThat(transactions).hasSize(1);
+        assertThat(transactions.get(0).isReceived()).isTrue();
+        assertThat(transactions.get(0).getFriendName()).isEqualTo("User1");
+        assertThat((List<?>) notFound.getModelAndView().getModel().get("transactions")).isEmpty();
+    }
+    
+}
@@ -0,0 +1,92 @@
+package com.cordierlaurent.paymybuddy.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cordierlaurent.paymybuddy.controller.AbstractIntegrationTest;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.model.User;
+
+import lombok.extern.log4j.Log4j2;
+
+/*
+Benchmark des insertions de transactions, avant/après le passage des id en blocs (@TableGenerator) + batch JDBC de Hibernate.
+Désactivé par défaut (il insère plusieurs milliers de lignes) : pour le lancer
+    mvn verify -Dbenchmark=true -Dit.test=TransactionInsertBenchmarkIT
+*/
+@Log4j2
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class TransactionInsertBenchmarkIT extends AbstractIntegrationTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 5000);
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    @DisplayName("Batched inserts with pooled ids against one insert per round trip (IDENTITY)")
+    void insertTransactionsBenchmarkTest() {
+        // given
+        User user1 = saveUserTest("User1", "user1@test.com", "user1@78");
+        User user2 = saveUserTest("User2", "user2@test.com", "user2@78");
+
+        // when : avant => comportement de GenerationType.IDENTITY, un INSERT et un aller-retour par ligne pour lire l'id généré.
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < ROWS; i++) {
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "INSERT INTO transactions (sender_id, receiver_id, description, amount) VALUES (?, ?, ?, ?)",
+                            Statement.RETURN_GENERATED_KEYS);
+                    ps.setLong(1, user1.getId());
+                    ps.setLong(2, user2.getId());
+                    ps.setString(3, "benchmark");
+                    ps.setBigDecimal(4, BigDecimal.ONE);
+                    return ps;
+                }, new GeneratedKeyHolder());
+            }
+        });
+        long identityNanos = System.nanoTime() - start;
+        assertThat(transactionRepository.count()).isEqualTo(ROWS);
+        // suppression avant la 2ème mesure : les id de l'auto-incrémentation ne doivent pas croiser ceux des blocs de Hibernate.
+        transactionRepository.deleteAllInBatch();
+
+        // when : après => id pris dans les blocs réservés, INSERT envoyés par paquets de hibernate.jdbc.batch_size.
+        start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            User sender = userRepository.getReferenceById(user1.getId());
+            User receiver = userRepository.getReferenceById(user2.getId());
+            List<Transaction> transactions = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                Transaction transaction = new Transaction();
+                transaction.setSender(sender);
+                transaction.setReceiver(receiver);
+                transaction.setDescription("benchmark");
+                transaction.setAmount(BigDecimal.ONE);
+                transactions.add(transaction);
+            }
+            transactionRepository.saveAll(transactions);
+            transactionRepository.flush();
+        });
+        long pooledNanos = System.nanoTime() - start;
+
+        // then
+        assertThat(transactionRepository.count()).isEqualTo(ROWS);
+        log.info("insertTransactionsBenchmarkTest,rows="+ROWS
+                +",identity="+(ROWS * 1_000_000_000L / identityNanos)+" inserts/s"
+                +",pooled+batch="+(ROWS * 1_000_000_000L / pooledNanos)+" inserts/s");
+    }
+
+}
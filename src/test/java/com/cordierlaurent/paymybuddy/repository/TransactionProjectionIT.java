@@ -0,0 +1,132 @@
+package com.cordierlaurent.paymybuddy.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import com.cordierlaurent.paymybuddy.controller.AbstractIntegrationTest;
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionFilterDTO;
+import com.cordierlaurent.paymybuddy.dto.AdminTransactionPageDTO;
+import com.cordierlaurent.paymybuddy.dto.UserTransactionPageDTO;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.model.User;
+import com.cordierlaurent.paymybuddy.service.TransactionService;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.log4j.Log4j2;
+
+// les statistiques de Hibernate comptent les requêtes SQL préparées => vérifie qu'une page d'historique a un coût fixe (pas de N+1 sur les User).
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Log4j2
+public class TransactionProjectionIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private User sender;
+
+    @BeforeEach
+    void saveTransactions() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // un bénéficiaire différent par transaction : chargées en entités, chaque User serait lu par une requête de plus.
+        sender = saveUserTest("Sender", "sender@test.com", "sender@78");
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User receiver = saveUserTest("Receiver" + i, "receiver" + i + "@test.com", "receiver@78");
+            Transaction transaction = new Transaction();
+            transaction.setSender(sender);
+            transaction.setReceiver(receiver);
+            transaction.setDescription("transaction " + i);
+            transaction.setAmount(BigDecimal.ONE);
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+    }
+
+    @Test
+    @DisplayName("A page of the user history is read with one SQL statement per direction")
+    void getUserTransactionsPageInOneQueryPerDirectionTest() {
+        // given
+        statistics.clear();
+
+        // when
+        UserTransactionPageDTO page = transactionService.getUserTransactionsPage(sender.getId(), null);
+
+        // then
+        log.debug("getUserTransactionsPageInOneQueryPerDirectionTest,page="+page);
+        assertThat(page.getTransactions()).hasSize(5);
+        assertThat(page.getTransactions()).extracting("friendName").allMatch(name -> ((String) name).startsWith("Receiver"));
+        assertThat(page.getTransactions()).extracting("received").containsOnly(false);
+        // envoyées + reçues.
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("The received transfers are merged with the sent ones, from newest to oldest")
+    void getUserTransactionsPageWithReceivedTransfersTest() {
+        // given : Receiver0 renvoie un transfert à l'émetteur, après celui qu'il a reçu.
+        User receiver0 = userRepository.findByEmail("receiver0@test.com").get();
+        Transaction transaction = new Transaction();
+        transaction.setSender(receiver0);
+        transaction.setReceiver(sender);
+        transaction.setDescription("retour");
+        transaction.setAmount(BigDecimal.TEN);
+        transactionRepository.save(transaction);
+
+        // when
+        UserTransactionPageDTO senderPage = transactionService.getUserTransactionsPage(sender.getId(), null);
+        UserTransactionPageDTO receiverPage = transactionService.getUserTransactionsPage(receiver0.getId(), null);
+
+        // then : la plus récente en premier, vue des deux côtés.
+        assertThat(senderPage.getTransactions()).hasSize(6);
+        assertThat(senderPage.getTransactions().get(0).isReceived()).isTrue();
+        assertThat(senderPage.getTransactions().get(0).getFriendName()).isEqualTo("Receiver0");
+        assertThat(receiverPage.getTransactions()).extracting("description").containsExactly("retour", "transaction 0");
+        assertThat(receiverPage.getTransactions()).extracting("received").containsExactly(false, true);
+    }
+
+    @Test
+    @DisplayName("A page of the administrator listing is read with one SQL statement, the total is counted once")
+    void getAdminTransactionsInOneQueryTest() {
+        // given : filtre propre au test pour ne pas lire un total en cache.
+        AdminTransactionFilterDTO filter = new AdminTransactionFilterDTO();
+        filter.setSenderEmail("sender@test.com");
+        statistics.clear();
+
+        // when
+        AdminTransactionPageDTO page = transactionService.getAdminTransactions(filter);
+
+        // then : la page + le total.
+        assertThat(page.getTransactions()).hasSize(5);
+        assertThat(page.getTransactions()).extracting("userName").containsOnly("Sender");
+        assertThat(page.getEstimatedTotal()).isEqualTo(5);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        // when : page suivante avec les mêmes filtres.
+        statistics.clear();
+        filter.setPage(1);
+        page = transactionService.getAdminTransactions(filter);
+
+        // then : le total vient du cache.
+        assertThat(page.getTransactions()).isEmpty();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,105 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.cordierlaurent.paymybuddy.exception.AccountLockTimeoutException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AccountLockManagerTest {
+
+    private AccountLockManager accountLockManager;
+    
+    private SimpleMeterRegistry meterRegistry;
+    
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        accountLockManager = new AccountLockManager();
+        // pas de contexte Spring : injection manuelle des champs.
+        ReflectionTestUtils.setField(accountLockManager, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(accountLockManager, "enabled", true);
+        ReflectionTestUtils.setField(accountLockManager, "stripeCount", 16);
+        ReflectionTestUtils.setField(accountLockManager, "timeoutMs", 200L);
+        accountLockManager.init();
+        executorService = Executors.newFixedThreadPool(2);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Opposite transfers A->B and B->A do not deadlock")
+    void executeLockedInOppositeOrderDoesNotDeadlockTest() throws Exception {
+        // given
+        CountDownLatch start = new CountDownLatch(1);
+        
+        // when
+        Future<Integer> first = executorService.submit(() -> {
+            start.await();
+            int count = 0;
+            for (int i = 0; i < 1000; i++) {
+                count += accountLockManager.executeLocked(() -> 1, 1L, 2L);
+            }
+            return count;
+        });
+        Future<Integer> second = executorService.submit(() -> {
+            start.await();
+            int count = 0;
+            for (int i = 0; i < 1000; i++) {
+                count += accountLockManager.executeLocked(() -> 1, 2L, 1L);
+            }
+            return count;
+        });
+        start.countDown();
+        
+        // then
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo(1000);
+        assertThat(second.get(10, TimeUnit.SECONDS)).isEqualTo(1000);
+    }
+    
+    @Test
+    @DisplayName("A lock held too long makes the other caller fail after the timeout")
+    void executeLockedWhenLockIsHeldThrowsTimeoutTest() throws Exception {
+        // given
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executorService.submit(() -> accountLockManager.executeLocked(() -> {
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }, 1L));
+        locked.await();
+        
+        // when then
+        assertThatThrownBy(() -> accountLockManager.executeLocked(() -> null, 1L, 2L))
+            .isInstanceOf(AccountLockTimeoutException.class);
+        release.countDown();
+        
+        String stripe = String.valueOf(accountLockManager.stripeOf(1L));
+        assertThat(meterRegistry.get("paymybuddy.lock.timeouts").tag("stripe", stripe).functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("paymybuddy.lock.contentions").tag("stripe", stripe).functionCounter().count()).isEqualTo(1);
+    }
+    
+}
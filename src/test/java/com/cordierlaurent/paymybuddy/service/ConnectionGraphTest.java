@@ -0,0 +1,87 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.cordierlaurent.paymybuddy.service.ConnectionGraph.Suggestion;
+
+public class ConnectionGraphTest {
+
+    private ConnectionGraph connectionGraph;
+
+    // pas de base : le graphe est rempli directement par des ajouts, comme après le chargement.
+    private void setup(int compactionThreshold) {
+        connectionGraph = new ConnectionGraph();
+        ReflectionTestUtils.setField(connectionGraph, "ready", true);
+        ReflectionTestUtils.setField(connectionGraph, "compactionThreshold", compactionThreshold);
+        // 1 => 2, 3 ; 2 => 3, 4, 5 ; 3 => 1, 4, 6 ; 6 => 7.
+        long[][] edges = {{1, 2}, {1, 3}, {2, 3}, {2, 4}, {2, 5}, {3, 1}, {3, 4}, {3, 6}, {6, 7}};
+        for (long[] edge : edges) {
+            connectionGraph.add(edge[0], edge[1]);
+        }
+    }
+
+    @BeforeEach
+    void setup() {
+        setup(1000);
+    }
+
+    @Test
+    @DisplayName("The friends of friends are ranked by mutual friends, without the user and their friends")
+    void suggestByMutualFriendsTest() {
+        // 4 : ami de 2 et de 3 ; 5 : ami de 2 ; 6 : ami de 3 (à égalité, le plus petit id d'abord).
+        assertThat(connectionGraph.suggest(1L, 10)).containsExactly(new Suggestion(4, 2), new Suggestion(5, 1), new Suggestion(6, 1));
+        assertThat(connectionGraph.suggest(1L, 2)).containsExactly(new Suggestion(4, 2), new Suggestion(5, 1));
+        // 7 n'a pas de relation.
+        assertThat(connectionGraph.suggest(7L, 10)).isEmpty();
+        assertThat(connectionGraph.suggest(99L, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A new connection changes the suggestions")
+    void suggestAfterAddTest() {
+        // when : 1 ajoute 4 => 4 n'est plus suggéré, ses amis n'en ont pas.
+        connectionGraph.add(1L, 4L);
+        connectionGraph.add(5L, 7L);
+
+        // then
+        assertThat(connectionGraph.suggest(1L, 10)).containsExactly(new Suggestion(5, 1), new Suggestion(6, 1));
+        assertThat(connectionGraph.suggest(2L, 10)).containsExactly(new Suggestion(1, 1), new Suggestion(6, 1), new Suggestion(7, 1));
+    }
+
+    @Test
+    @DisplayName("The compaction of the pending connections keeps the same suggestions")
+    void compactionTest() {
+        // given : fusion tous les 4 ajouts => 2 graphes compacts successifs + 1 arc en attente.
+        setup(4);
+
+        // then
+        assertThat(connectionGraph.suggest(1L, 10)).containsExactly(new Suggestion(4, 2), new Suggestion(5, 1), new Suggestion(6, 1));
+        assertThat(connectionGraph.suggest(3L, 10)).containsExactly(new Suggestion(2, 1), new Suggestion(7, 1));
+    }
+
+    @Test
+    @DisplayName("The connections are found in the compact graph and in the pending ones, in their direction only")
+    void containsTest() {
+        // given : 2 graphes compacts successifs + 1 arc en attente (6 => 7).
+        setup(4);
+
+        // then
+        assertThat(connectionGraph.contains(1L, 2L)).isTrue();
+        assertThat(connectionGraph.contains(6L, 7L)).isTrue();
+        assertThat(connectionGraph.contains(2L, 1L)).isFalse();
+        assertThat(connectionGraph.contains(1L, 4L)).isFalse();
+        assertThat(connectionGraph.contains(99L, 1L)).isFalse();
+
+        // when : graphe pas encore chargé => réponse négative, la base fait foi.
+        ReflectionTestUtils.setField(connectionGraph, "ready", false);
+
+        // then
+        assertThat(connectionGraph.contains(1L, 2L)).isFalse();
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.cordierlaurent.paymybuddy.dto.FriendDTO;
+import com.cordierlaurent.paymybuddy.repository.ConnectionRepository;
+
+public class RecentRecipientsServiceTest {
+
+    private static final FriendDTO ALICE = new FriendDTO(2L, "Alice");
+    private static final FriendDTO BOB = new FriendDTO(3L, "Bob");
+    private static final FriendDTO CAROL = new FriendDTO(4L, "Carol");
+    private static final FriendDTO DAVID = new FriendDTO(5L, "David");
+
+    private RecentRecipientsService recentRecipientsService;
+
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        // pas de base : Carol est la seule destinataire récente, les amis par nom sont Alice, Bob, Carol, David.
+        namedParameterJdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        when(namedParameterJdbcTemplate.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class))).thenReturn(List.of(CAROL));
+        ConnectionRepository connectionRepository = mock(ConnectionRepository.class);
+        when(connectionRepository.findFriends(eq(1L), any(Pageable.class))).thenReturn(List.of(ALICE, BOB, CAROL, DAVID));
+        MonthlyRollupService monthlyRollupService = mock(MonthlyRollupService.class);
+        when(monthlyRollupService.currentMonth()).thenReturn(YearMonth.of(2026, 10));
+
+        recentRecipientsService = new RecentRecipientsService();
+        // pas de contexte Spring : injection manuelle des champs.
+        ReflectionTestUtils.setField(recentRecipientsService, "namedParameterJdbcTemplate", namedParameterJdbcTemplate);
+        ReflectionTestUtils.setField(recentRecipientsService, "connectionRepository", connectionRepository);
+        ReflectionTestUtils.setField(recentRecipientsService, "monthlyRollupService", monthlyRollupService);
+        ReflectionTestUtils.setField(recentRecipientsService, "maxResults", 3);
+        ReflectionTestUtils.setField(recentRecipientsService, "months", 3);
+        ReflectionTestUtils.setField(recentRecipientsService, "cacheMaxSize", 100);
+        ReflectionTestUtils.setField(recentRecipientsService, "cacheSeconds", 60L);
+        recentRecipientsService.init();
+    }
+
+    @Test
+    @DisplayName("The recent recipients come first, completed by the friends by name, then the list is read from memory")
+    @SuppressWarnings("unchecked")
+    void getRecipientsTest() {
+        assertThat(recentRecipientsService.getRecipients(1L)).containsExactly(CAROL, ALICE, BOB);
+        assertThat(recentRecipientsService.getRecipients(1L)).containsExactly(CAROL, ALICE, BOB);
+
+        verify(namedParameterJdbcTemplate, times(1)).query(anyString(), any(SqlParameterSource.class), any(RowMapper.class));
+    }
+
+    @Test
+    @DisplayName("The receiver of a committed transfer moves to the top, the list keeps its size")
+    void recordTest() {
+        recentRecipientsService.getRecipients(1L);
+
+        recentRecipientsService.record(1L, DAVID);
+        assertThat(recentRecipientsService.getRecipients(1L)).containsExactly(DAVID, CAROL, ALICE);
+
+        recentRecipientsService.record(1L, ALICE);
+        assertThat(recentRecipientsService.getRecipients(1L)).containsExactly(ALICE, DAVID, CAROL);
+    }
+
+    @Test
+    @DisplayName("A list read during a transfer of its user is not cached, a transfer of another user does not matter")
+    @SuppressWarnings("unchecked")
+    void getRecipientsDuringRecordTest() {
+        // la base est lue pendant qu'un transfert de l'utilisateur 1, puis d'un autre utilisateur, est validé.
+        when(namedParameterJdbcTemplate.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> {
+                    recentRecipientsService.record(1L, DAVID);
+                    return List.of(CAROL);
+                })
+                .thenAnswer(invocation -> {
+                    recentRecipientsService.record(2L, DAVID);
+                    return List.of(DAVID, CAROL);
+                });
+
+        // la première liste, antérieure au transfert de l'utilisateur 1, n'est pas gardée : la seconde l'est.
+        recentRecipientsService.getRecipients(1L);
+        recentRecipientsService.getRecipients(1L);
+        assertThat(recentRecipientsService.getRecipients(1L)).containsExactly(DAVID, CAROL, ALICE);
+
+        verify(namedParameterJdbcTemplate, times(2)).query(anyString(), any(SqlParameterSource.class), any(RowMapper.class));
+    }
+}
@@ -0,0 +1,60 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class TransactionSearchIndexTest {
+
+    private TransactionSearchIndex transactionSearchIndex;
+
+    @BeforeEach
+    void setup() {
+        // pas de base : l'index est rempli directement, comme après la reconstruction.
+        transactionSearchIndex = new TransactionSearchIndex();
+        ReflectionTestUtils.setField(transactionSearchIndex, "ready", true);
+        transactionSearchIndex.index(1L, 10L, 20L, "Loyer de janvier");
+        transactionSearchIndex.index(2L, 10L, 30L, "Restaurant L'Étoile");
+        transactionSearchIndex.index(3L, 20L, 10L, "remboursement restaurant");
+        // arrivée dans le désordre (transactions validées en parallèle).
+        transactionSearchIndex.index(5L, 10L, 20L, "loyer février");
+        transactionSearchIndex.index(4L, 30L, 20L, "loyer mars");
+    }
+
+    @Test
+    @DisplayName("Terms are prefixes, case and accents are ignored, the newest transactions come first")
+    void searchByPrefixTest() {
+        assertThat(transactionSearchIndex.search(10L, "REST", 10)).containsExactly(3L, 2L);
+        assertThat(transactionSearchIndex.search(10L, "etoile", 10)).containsExactly(2L);
+        assertThat(transactionSearchIndex.search(20L, "loyer", 10)).containsExactly(5L, 4L, 1L);
+    }
+
+    @Test
+    @DisplayName("All the terms of a query must be found, in the transactions of the user only")
+    void searchWithSeveralTermsTest() {
+        assertThat(transactionSearchIndex.search(10L, "loyer fév", 10)).containsExactly(5L);
+        assertThat(transactionSearchIndex.search(10L, "loyer mars", 10)).isEmpty();
+        assertThat(transactionSearchIndex.search(30L, "loyer", 10)).containsExactly(4L);
+        assertThat(transactionSearchIndex.search(99L, "loyer", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("The number of results is limited and a transaction indexed twice is found once")
+    void searchLimitAndDuplicatesTest() {
+        transactionSearchIndex.index(5L, 10L, 20L, "loyer février");
+
+        assertThat(transactionSearchIndex.search(20L, "loyer", 2)).containsExactly(5L, 4L);
+    }
+
+    @Test
+    @DisplayName("The search is refused while the index is being rebuilt")
+    void searchNotReadyTest() {
+        ReflectionTestUtils.setField(transactionSearchIndex, "ready", false);
+
+        assertThatThrownBy(() -> transactionSearchIndex.search(10L, "loyer", 10)).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,124 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.cordierlaurent.paymybuddy.exception.TransactionException;
+import com.cordierlaurent.paymybuddy.util.Result;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TransferPipelineTest {
+
+    private TransferPipeline transferPipeline;
+    
+    private SimpleMeterRegistry meterRegistry;
+    
+    // nombre de transactions ouvertes par l'écrivain.
+    private AtomicInteger transactionCount;
+    
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        transactionCount = new AtomicInteger();
+        // pas de base : la "transaction" exécute simplement le travail demandé.
+        TransactionExecutor transactionExecutor = mock(TransactionExecutor.class);
+        when(transactionExecutor.executeWithRetry(any())).thenAnswer(invocation -> {
+            transactionCount.incrementAndGet();
+            return ((Supplier<?>) invocation.getArgument(0)).get();
+        });
+        
+        transferPipeline = new TransferPipeline();
+        // pas de contexte Spring : injection manuelle des champs.
+        ReflectionTestUtils.setField(transferPipeline, "transactionExecutor", transactionExecutor);
+        ReflectionTestUtils.setField(transferPipeline, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(transferPipeline, "enabled", true);
+        ReflectionTestUtils.setField(transferPipeline, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(transferPipeline, "maxBatchSize", 50);
+        ReflectionTestUtils.setField(transferPipeline, "maxWaitMs", 20L);
+        ReflectionTestUtils.setField(transferPipeline, "offerTimeoutMs", 100L);
+        ReflectionTestUtils.setField(transferPipeline, "resultTimeoutMs", 5000L);
+        transferPipeline.start();
+        executorService = Executors.newFixedThreadPool(20);
+    }
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executorService.shutdownNow();
+        transferPipeline.stop();
+    }
+
+    @Test
+    @DisplayName("Concurrent transfers are committed in batches and each caller gets its own result")
+    void executeGroupsConcurrentTransfersTest() throws Exception {
+        // given
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Result>> futures = new ArrayList<>();
+        
+        // when
+        for (int i = 0; i < 100; i++) {
+            String message = "transfer " + i;
+            futures.add(executorService.submit(() -> {
+                start.await();
+                return transferPipeline.execute(() -> new Result(true, message));
+            }));
+        }
+        start.countDown();
+        
+        // then
+        for (int i = 0; i < futures.size(); i++) {
+            Result result = futures.get(i).get(10, TimeUnit.SECONDS);
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.getMessage()).isEqualTo("transfer " + i);
+        }
+        assertThat(transactionCount.get()).isLessThan(100);
+        assertThat(meterRegistry.get("paymybuddy.pipeline.batch.size").summary().totalAmount()).isEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("A failing transfer does not fail the other transfers of its batch")
+    void executeReplaysBatchWhenOneTransferFailsTest() throws Exception {
+        // given
+        CountDownLatch start = new CountDownLatch(1);
+        
+        // when
+        Future<Result> ok = executorService.submit(() -> {
+            start.await();
+            return transferPipeline.execute(() -> new Result(true, "ok"));
+        });
+        Future<Result> ko = executorService.submit(() -> {
+            start.await();
+            return transferPipeline.execute(() -> {
+                throw new TransactionException("credit failed");
+            });
+        });
+        start.countDown();
+        
+        // then
+        assertThat(ok.get(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThatThrownBy(() -> ko.get(10, TimeUnit.SECONDS))
+            .hasCauseInstanceOf(TransactionException.class);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.cordierlaurent.paymybuddy.dto.UserTransactionPageDTO;
+import com.cordierlaurent.paymybuddy.model.Transaction;
+import com.cordierlaurent.paymybuddy.model.User;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class UserHistoryCacheTest {
+
+    private UserHistoryCache userHistoryCache;
+
+    @BeforeEach
+    void setup() {
+        userHistoryCache = new UserHistoryCache();
+        // pas de contexte Spring : injection manuelle des champs.
+        ReflectionTestUtils.setField(userHistoryCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(userHistoryCache, "maxSize", 100);
+        ReflectionTestUtils.setField(userHistoryCache, "ttlSeconds", 60L);
+        userHistoryCache.init();
+    }
+
+    private Transaction transaction(long senderId, long receiverId) {
+        User sender = new User();
+        sender.setId(senderId);
+        User receiver = new User();
+        receiver.setId(receiverId);
+        Transaction transaction = new Transaction();
+        transaction.setSender(sender);
+        transaction.setReceiver(receiver);
+        return transaction;
+    }
+
+    @Test
+    @DisplayName("A page read during a transfer of its user is not cached, a transfer of other users does not matter")
+    void getDuringTransferTest() {
+        // given
+        UserTransactionPageDTO page = new UserTransactionPageDTO(List.of(), null);
+
+        // when : un transfert entre les utilisateurs 3 et 4 est validé pendant la lecture de la page de l'utilisateur 1.
+        userHistoryCache.get(1L, () -> {
+            userHistoryCache.invalidateAfterCommit(transaction(3L, 4L));
+            return page;
+        });
+        // un transfert de l'utilisateur 2 est validé pendant la lecture de sa page.
+        userHistoryCache.get(2L, () -> {
+            userHistoryCache.invalidateAfterCommit(transaction(2L, 4L));
+            return page;
+        });
+
+        // then : seule la page de l'utilisateur 2 est relue.
+        UserTransactionPageDTO reloaded = new UserTransactionPageDTO(List.of(), null);
+        assertThat(userHistoryCache.get(1L, () -> reloaded)).isSameAs(page);
+        assertThat(userHistoryCache.get(2L, () -> reloaded)).isSameAs(reloaded);
+    }
+}
@@ -0,0 +1,88 @@
+package com.cordierlaurent.paymybuddy.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.cordierlaurent.paymybuddy.service.UserSearchIndex.Entry;
+
+public class UserSearchIndexTest {
+
+    private UserSearchIndex userSearchIndex;
+
+    @BeforeEach
+    void setup() {
+        // pas de base : l'index est rempli directement, comme après le chargement.
+        userSearchIndex = new UserSearchIndex();
+        ReflectionTestUtils.setField(userSearchIndex, "ready", true);
+        userSearchIndex.put(new Entry(1L, "Jean-Pierre Dupont", "jp.dupont@test.com"), true);
+        userSearchIndex.put(new Entry(2L, "Élodie Durand", "elodie@test.com"), true);
+        userSearchIndex.put(new Entry(3L, "Jeanne", "jeanne@test.com"), true);
+    }
+
+    private List<Long> ids(List<Entry> entries) {
+        return entries.stream().map(Entry::id).toList();
+    }
+
+    @Test
+    @DisplayName("A name is found from each of its words, case and accents ignored, the email only from '@'")
+    void searchTest() {
+        assertThat(ids(userSearchIndex.search("jean", 0L, 10))).containsExactly(1L, 3L);
+        assertThat(ids(userSearchIndex.search("pierre du", 0L, 10))).containsExactly(1L);
+        assertThat(ids(userSearchIndex.search("ELO", 0L, 10))).containsExactly(2L);
+        assertThat(ids(userSearchIndex.search("DU", 0L, 10))).containsExactly(1L, 2L);
+        assertThat(userSearchIndex.search("jp.dup", 0L, 10)).isEmpty();
+        assertThat(ids(userSearchIndex.search("jp.dupont@", 0L, 10))).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("An email containing separators of names ('_', '-', '+') is found by its beginning")
+    void searchEmailWithSeparatorsTest() {
+        userSearchIndex.put(new Entry(4L, "Marie Claire", "marie-claire_b+pmb@test.com"), true);
+
+        assertThat(ids(userSearchIndex.search("Marie-Claire_B+pmb@", 0L, 10))).containsExactly(4L);
+        assertThat(ids(userSearchIndex.searchAmong("marie-claire_b+pmb@test", List.of(1L, 4L), 10))).containsExactly(4L);
+        assertThat(UserSearchIndex.matchesEmail(new Entry(4L, "Marie Claire", "marie-claire_b+pmb@test.com"), "marie-claire_b+")).isFalse();
+        assertThat(UserSearchIndex.matchesEmail(new Entry(4L, "Marie Claire", "marie-claire_b+pmb@test.com"), "marie-claire_b+pmb@")).isTrue();
+    }
+
+    @Test
+    @DisplayName("The excluded user is not returned and the number of results is limited")
+    void searchExcludedAndLimitTest() {
+        assertThat(ids(userSearchIndex.search("jean", 1L, 10))).containsExactly(3L);
+        assertThat(ids(userSearchIndex.search("d", 0L, 1))).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("An update replaces the name and email of the user, the load keeps the updated version")
+    void putTest() {
+        userSearchIndex.put(new Entry(3L, "Jeanne Martin", "jmartin@test.com"), true);
+        userSearchIndex.put(new Entry(3L, "Jeanne", "jeanne@test.com"), false);
+
+        assertThat(ids(userSearchIndex.search("mar", 0L, 10))).containsExactly(3L);
+        assertThat(userSearchIndex.search("jeanne@", 0L, 10)).isEmpty();
+        assertThat(ids(userSearchIndex.search("jmartin@", 0L, 10))).containsExactly(3L);
+    }
+
+    @Test
+    @DisplayName("Among the friends, a user is found by a word of the name or by the email, in the order of the friends")
+    void searchAmongTest() {
+        assertThat(ids(userSearchIndex.searchAmong("j", List.of(3L, 1L, 2L), 10))).containsExactly(3L, 1L);
+        assertThat(ids(userSearchIndex.searchAmong("elodie@", List.of(1L, 2L), 10))).containsExactly(2L);
+        assertThat(userSearchIndex.searchAmong("durand", List.of(1L, 3L), 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("The search is refused while the index is being loaded")
+    void searchNotReadyTest() {
+        ReflectionTestUtils.setField(userSearchIndex, "ready", false);
+
+        assertThatThrownBy(() -> userSearchIndex.search("jean", 0L, 10)).isInstanceOf(IllegalStateException.class);
+    }
+}
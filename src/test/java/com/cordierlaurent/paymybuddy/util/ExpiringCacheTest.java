@@ -0,0 +1,46 @@
+package com.cordierlaurent.paymybuddy.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ExpiringCacheTest {
+
+    @Test
+    @DisplayName("A value loaded while its key is invalidated is not cached, a load of another key is")
+    void putIfUnchangedTest() {
+        // given
+        ExpiringCache<Long, String> cache = new ExpiringCache<>(100, 60, TimeUnit.SECONDS);
+        long version1 = cache.version(1L);
+        long version2 = cache.version(2L);
+
+        // when : la clé 1 est invalidée pendant sa lecture en base.
+        cache.invalidate(1L);
+        boolean kept1 = cache.putIfUnchanged(1L, "ancienne valeur", version1);
+        boolean kept2 = cache.putIfUnchanged(2L, "valeur", version2);
+
+        // then
+        assertThat(kept1).isFalse();
+        assertThat(cache.get(1L)).isNull();
+        assertThat(kept2).isTrue();
+        assertThat(cache.get(2L)).isEqualTo("valeur");
+    }
+
+    @Test
+    @DisplayName("A value loaded before a put does not replace the value put")
+    void putIfUnchangedAfterPutTest() {
+        // given
+        ExpiringCache<Long, String> cache = new ExpiringCache<>(100, 60, TimeUnit.SECONDS);
+        long version = cache.version(1L);
+
+        // when
+        cache.put(1L, "nouvelle valeur");
+        cache.putIfUnchanged(1L, "ancienne valeur", version);
+
+        // then
+        assertThat(cache.get(1L)).isEqualTo("nouvelle valeur");
+    }
+}
@@ -0,0 +1,40 @@
+package com.cordierlaurent.paymybuddy.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class SortedMergeTest {
+
+    @Test
+    @DisplayName("Sorted lists are merged in the same order and cut at the limit")
+    void mergeFirstTest() {
+        // given : listes triées par ordre décroissant, comme l'historique.
+        List<Integer> sent = List.of(9, 6, 5, 1);
+        List<Integer> received = List.of(8, 7, 2);
+
+        // when
+        List<Integer> merged = SortedMerge.mergeFirst(List.of(sent, received), Comparator.reverseOrder(), 5);
+
+        // then
+        assertThat(merged).containsExactly(9, 8, 7, 6, 5);
+    }
+
+    @Test
+    @DisplayName("Empty lists are ignored and the result is shorter than the limit when the lists are")
+    void mergeFirstWithEmptyListTest() {
+        // given
+        List<Integer> sent = List.of();
+        List<Integer> received = List.of(3, 2);
+
+        // when
+        List<Integer> merged = SortedMerge.mergeFirst(List.of(sent, received), Comparator.reverseOrder(), 5);
+
+        // then
+        assertThat(merged).containsExactly(3, 2);
+    }
+}